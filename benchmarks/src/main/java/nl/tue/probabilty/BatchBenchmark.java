@@ -0,0 +1,56 @@
+package nl.tue.probabilty;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a batch of runs on a single thread, and turning the statistics of such a batch into
+ * the report that is written to the results files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    /**
+     * Scenario names, see {@link Scenarios#create(String)}.
+     */
+    @Param({"default", "stub-minor-55", "zondag", "root-n-accepting-12"})
+    public String setup;
+
+    @Param({"1000", "10000"})
+    public int runs;
+
+    private Results results;
+    private RunStatistics statistics;
+
+    @Setup
+    public void setUp() {
+        results = new Results(runs, Scenarios.create(setup));
+        statistics = results.runRange(0, runs);
+    }
+
+    @Benchmark
+    public RunStatistics runBatch() {
+        return results.runRange(0, runs);
+    }
+
+    @Benchmark
+    public String resultsToString() {
+        return Results.resultsToString(statistics);
+    }
+}
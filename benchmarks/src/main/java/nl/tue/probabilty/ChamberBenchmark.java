@@ -0,0 +1,61 @@
+package nl.tue.probabilty;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single run of a setup: generating the MPs, and generating them followed by the whole
+ * debate in a {@link LowerChambers}. The difference between the two is the time spent in
+ * {@link LowerChambers#runRound()} and counting the votes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChamberBenchmark {
+
+    /**
+     * Scenario names, see {@link Scenarios#create(String)}.
+     */
+    @Param({"default", "stub-minor-55", "zondag", "root-n-accepting-12"})
+    public String setup;
+
+    private nl.tue.probabilty.Setup chamberSetup;
+    private int[] votes;
+    private int run;
+
+    @Setup
+    public void setUp() {
+        chamberSetup = Scenarios.create(setup);
+        votes = new int[Results.DATA_PER_ROUND];
+    }
+
+    @Benchmark
+    public MP[] generateMPs() {
+        return chamberSetup.generateMPs(run++);
+    }
+
+    @Benchmark
+    public int[] debate() {
+        LowerChambers chamber = new LowerChambers(chamberSetup.generateMPs(run++),
+                VoteOptions.PRO);
+        for (int i = 0; i < LowerChambers.SPEAKERS_PER_SIDE; i++) {
+            chamber.runRound();
+        }
+        chamber.countVotes(votes);
+        return votes;
+    }
+}
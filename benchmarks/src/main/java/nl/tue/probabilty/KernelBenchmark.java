@@ -0,0 +1,104 @@
+package nl.tue.probabilty;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the arithmetic of {@link MP#speak(int, double)} and {@link MP#listen(int, double, int)}
+ * with the {@link KernelTables} lookups, for one round of a chamber where the speech skill and
+ * stubbornness take a given number of distinct values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KernelBenchmark {
+
+    @Param({"150", "10000"})
+    public int size;
+
+    @Param({"1", "16"})
+    public int distinctValues;
+
+    private int[] opinion;
+    private double[] speechSkill;
+    private double[] stubbornness;
+    private int[][] speechTables;
+    private double[][] influenceTables;
+    private int speech;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        opinion = new int[size];
+        speechSkill = new double[size];
+        stubbornness = new double[size];
+        speechTables = new int[size][];
+        influenceTables = new double[size][];
+        KernelTables tables = new KernelTables();
+        for (int i = 0; i < size; i++) {
+            opinion[i] = random.nextInt(-MP.OPINION_MAX, MP.OPINION_MAX + 1);
+            speechSkill[i] = (random.nextInt(distinctValues) + 1.0) / distinctValues;
+            stubbornness[i] = (random.nextInt(distinctValues) + 1.0) / distinctValues;
+            //a table is only built the second time a value is asked for
+            tables.speechTable(speechSkill[i]);
+            tables.influenceTable(stubbornness[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            speechTables[i] = tables.speechTable(speechSkill[i]);
+            influenceTables[i] = tables.influenceTable(stubbornness[i]);
+        }
+        speech = 137;
+    }
+
+    @Benchmark
+    public int speakArithmetic() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += MP.speak(opinion[i], speechSkill[i]);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int speakTable() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += KernelTables.speak(speechTables[i], opinion[i]);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int listenArithmetic() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += MP.listen(opinion[i], stubbornness[i], speech);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int listenTable() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += KernelTables.listen(influenceTables[i], opinion[i],
+                    stubbornness[i], speech);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,27 @@
+package nl.tue.probabilty;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Only built with -Pvector, checks that {@link ChamberEngine#VECTOR} uses {@link VectorChamber}
+ * instead of falling back to the array chamber, and that it still counts the same votes.
+ */
+class VectorEngineTest {
+
+    @Test
+    void vectorApiIsUsed() {
+        assertTrue(ChamberEngine.isVectorAvailable(), "VECTOR fell back to the array chamber");
+        assertTrue(ChamberEngine.VECTOR.create(Setup.getDefault().generateMPs(0), VoteOptions.PRO)
+                instanceof VectorChamber);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("nl.tue.probabilty.EngineEquivalenceTest#setups")
+    void vectorAgreesWithObjectChamber(String name, Setup setup) {
+        EngineEquivalenceTest.assertSameVotes(ChamberEngine.VECTOR, setup);
+    }
+}
@@ -0,0 +1,102 @@
+package nl.tue.probabilty;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.stream.Stream;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Debates the same generated chambers with every engine and checks that every round counts the
+ * same votes as the MP based {@link LowerChambers}. Without the Vector API {@link
+ * ChamberEngine#VECTOR} is checked through its scalar fallback.
+ */
+class EngineEquivalenceTest {
+
+    private static final int RUNS = 200;
+
+    static Stream<Arguments> setups() {
+        return Stream.of(
+                Arguments.of("default", Setup.getDefault()),
+                Arguments.of("consistency", Setup.getDefaultConsistency()),
+                Arguments.of("root-n", new Setup.RootNTestSetup(10, 0)),
+                Arguments.of("root-n-accepting", new Setup.RootNTestSetup(10, 0, 1.0)),
+                Arguments.of("stub-minor", new Setup.StubbornMinority(55, 400.0, 150.0, -600.0,
+                        100.0, 1.0, 0.1)),
+                Arguments.of("normal-op", new Setup.NormalOpNoSpeechOrStub(0.0, 400.0, 0.5, 0.5)),
+                Arguments.of("zondag", new Setup.TweedeKamerSetup(Setup.zondag)),
+                Arguments.of("roken", new Setup.TweedeKamerSetup(Setup.roken)));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("setups")
+    void enginesAgreeWithObjectChamber(String name, Setup setup) {
+        for (ChamberEngine engine : ChamberEngine.values()) {
+            if (engine != ChamberEngine.OBJECT) {
+                assertSameVotes(engine, setup);
+            }
+        }
+    }
+
+    /**
+     * Debates the runs in lockstep batches of {@link BatchChamber#DEFAULT_BATCH_SIZE}, with a
+     * smaller last batch, and compares every run with its own {@link LowerChambers}.
+     */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("setups")
+    void lockstepBatchAgreesWithObjectChamber(String name, Setup setup) {
+        int[] expected = new int[Results.DATA_PER_ROUND];
+        for (int start = 0; start < RUNS; start += BatchChamber.DEFAULT_BATCH_SIZE) {
+            int count = Math.min(BatchChamber.DEFAULT_BATCH_SIZE, RUNS - start);
+            MP[][] chambers = new MP[count][];
+            Chamber[] references = new Chamber[count];
+            for (int r = 0; r < count; r++) {
+                chambers[r] = setup.generateMPs(start + r);
+                references[r] = ChamberEngine.OBJECT.create(setup.generateMPs(start + r),
+                        VoteOptions.PRO);
+            }
+            BatchChamber batch = new BatchChamber(chambers);
+            int[][] actual = new int[count][Results.DATA_PER_ROUND];
+            for (int round = 0; round < Results.TOTAL_MEASURE_POINTS; round++) {
+                if (round > 0) {
+                    batch.runRound();
+                }
+                batch.countVotes(actual);
+                for (int r = 0; r < count; r++) {
+                    if (round > 0) {
+                        references[r].runRound();
+                    }
+                    references[r].countVotes(expected);
+                    assertArrayEquals(expected, actual[r], "Lockstep batch differs in run " +
+                            (start + r) + " round " + round);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the engine counts the same votes as the object chamber in every round of the
+     * first runs of the setup, with both start sides.
+     */
+    static void assertSameVotes(ChamberEngine engine, Setup setup) {
+        int[] expected = new int[Results.DATA_PER_ROUND];
+        int[] actual = new int[Results.DATA_PER_ROUND];
+        for (VoteOptions start : new VoteOptions[]{VoteOptions.PRO, VoteOptions.AGAINST}) {
+            for (int run = 0; run < RUNS; run++) {
+                Chamber reference = ChamberEngine.OBJECT.create(setup.generateMPs(run), start);
+                Chamber chamber = engine.create(setup.generateMPs(run), start);
+                for (int round = 0; round < Results.TOTAL_MEASURE_POINTS; round++) {
+                    if (round > 0) {
+                        reference.runRound();
+                        chamber.runRound();
+                    }
+                    reference.countVotes(expected);
+                    chamber.countVotes(actual);
+                    assertArrayEquals(expected, actual, engine + " differs in run " + run +
+                            " round " + round + " with " + start + " starting");
+                }
+            }
+        }
+    }
+}
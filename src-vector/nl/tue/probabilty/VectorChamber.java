@@ -0,0 +1,80 @@
+package nl.tue.probabilty;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Array chamber that lets the MPs listen a whole vector of lanes at a time with the incubating
+ * Vector API. Every lane does the same double operations in the same order as
+ * {@link MP#listen(int, double, int)}, truncates the influence towards zero and clamps the
+ * opinion to the same bounds. The speakers are left out by putting their old opinion back. The
+ * MPs after the last full vector listen through the normal scalar code.
+ * <p>
+ * The opinions are also kept as doubles so the lanes never have to be converted between int and
+ * double, which the JIT of JDK 17 can not do in vector registers. Truncating uses the 2^52 trick:
+ * adding and subtracting 2^52 rounds a smaller double to an integer, one is taken off where that
+ * rounded up.
+ * <p>
+ * Needs --add-modules jdk.incubator.vector to compile and run, {@link ChamberEngine#VECTOR} falls
+ * back to {@link ArrayChamber} when it is not available.
+ */
+public class VectorChamber extends ArrayChamber {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final double ROUNDING = 0x1p52;
+
+    private final double[] opinions;
+
+    public VectorChamber(MP[] mps, VoteOptions startSide) {
+        super(mps, startSide);
+        opinions = new double[opinion.length];
+        for (int i = 0; i < opinion.length; i++) {
+            opinions[i] = opinion[i];
+        }
+    }
+
+    @Override
+    void speakToOthers(int influence, int first, int other) {
+        int lanes = DOUBLES.length();
+        int bound = opinion.length - opinion.length % lanes;
+        DoubleVector speech = DoubleVector.broadcast(DOUBLES, influence);
+
+        //the speakers do not listen, their lanes are put back afterwards
+        double firstOpinion = first < 0 ? 0 : opinions[first];
+        double otherOpinion = other < 0 ? 0 : opinions[other];
+        int j = 0;
+        for (; j < bound; j += lanes) {
+            DoubleVector current = DoubleVector.fromArray(DOUBLES, opinions, j);
+            DoubleVector absolute = current.abs();
+            DoubleVector stubborn = DoubleVector.fromArray(DOUBLES, stubbornness, j);
+
+            //stubbornness * 2 * speech * (OPINION_MAX - abs) / (2 * abs + OPINION_MAX)
+            DoubleVector change = stubborn.mul(2.0).mul(speech)
+                    .mul(absolute.neg().add(MP.OPINION_MAX))
+                    .div(absolute.mul(2.0).add(MP.OPINION_MAX));
+
+            //truncate towards zero like the (int) cast
+            DoubleVector size = change.abs();
+            DoubleVector rounded = size.add(ROUNDING).sub(ROUNDING);
+            rounded = rounded.sub(1.0, rounded.compare(VectorOperators.GT, size));
+            DoubleVector truncated = rounded.blend(rounded.neg(),
+                    change.compare(VectorOperators.LT, 0.0));
+
+            current.add(truncated).max(-MP.OPINION_MAX).min(MP.OPINION_MAX)
+                    .intoArray(opinions, j);
+        }
+        for (; j < opinion.length; j++) {
+            opinions[j] = MP.listen(opinion[j], stubbornness[j], influence);
+        }
+        if (first >= 0) {
+            opinions[first] = firstOpinion;
+        }
+        if (other >= 0) {
+            opinions[other] = otherOpinion;
+        }
+        for (int i = 0; i < opinion.length; i++) {
+            opinion[i] = (int) opinions[i];
+        }
+    }
+}
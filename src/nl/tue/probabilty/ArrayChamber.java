@@ -0,0 +1,137 @@
+package nl.tue.probabilty;
+
+/**
+ * Chamber that keeps the state of the MPs in primitive arrays instead of MP objects. It follows
+ * the same rules as {@link LowerChambers} and does not allocate anything while debating.
+ * <p>
+ * Optionally speaking and listening use the {@link KernelTables} of the speech skill and
+ * stubbornness of every MP instead of computing the formulas each time.
+ */
+public class ArrayChamber implements Chamber {
+
+    private static final int NO_SPEAKER = -1;
+
+    final int[] opinion;
+    private final double[] speechSkill;
+    final double[] stubbornness;
+    private final boolean[] spoken;
+    private final int[][] speechTables;
+    private final double[][] influenceTables;
+
+    private final VoteOptions startSide;
+    private final VoteOptions secondSide;
+
+    public ArrayChamber(MP[] mps, VoteOptions startSide) {
+        this(mps, startSide, null);
+    }
+
+    /**
+     * @param tables the lookup tables to use, or null to always compute the formulas
+     */
+    ArrayChamber(MP[] mps, VoteOptions startSide, KernelTables tables) {
+        opinion = new int[mps.length];
+        speechSkill = new double[mps.length];
+        stubbornness = new double[mps.length];
+        spoken = new boolean[mps.length];
+        for (int i = 0; i < mps.length; i++) {
+            opinion[i] = mps[i].getOpinion();
+            speechSkill[i] = mps[i].getSpeechSkill();
+            stubbornness[i] = mps[i].getStubbornness();
+        }
+        if (tables != null) {
+            speechTables = new int[mps.length][];
+            influenceTables = new double[mps.length][];
+            for (int i = 0; i < mps.length; i++) {
+                speechTables[i] = tables.speechTable(speechSkill[i]);
+                influenceTables[i] = tables.influenceTable(stubbornness[i]);
+            }
+        } else {
+            speechTables = null;
+            influenceTables = null;
+        }
+        this.startSide = startSide;
+        this.secondSide = startSide.otherSide();
+    }
+
+    @Override
+    public void runRound() {
+        int first = getBestSpeaker(startSide);
+        int other = getBestSpeaker(secondSide);
+
+        if (first != NO_SPEAKER) {
+            spoken[first] = true;
+        }
+
+        if (other != NO_SPEAKER) {
+            spoken[other] = true;
+        }
+
+        int totalInfluence = calcInfluence(first) + calcInfluence(other);
+
+        speakToOthers(totalInfluence, first, other);
+    }
+
+    /**
+     * Lets every MP except the two speakers listen to the influence of this round.
+     */
+    void speakToOthers(int influence, int first, int other) {
+        for (int j = 0; j < opinion.length; j++) {
+            if (j != first && j != other) {
+                opinion[j] = listen(j, influence);
+            }
+        }
+    }
+
+    private int listen(int mp, int influence) {
+        if (influenceTables != null && influenceTables[mp] != null) {
+            return KernelTables.listen(influenceTables[mp], opinion[mp], stubbornness[mp],
+                    influence);
+        }
+        return MP.listen(opinion[mp], stubbornness[mp], influence);
+    }
+
+    private int speak(int mp) {
+        if (speechTables != null && speechTables[mp] != null) {
+            return KernelTables.speak(speechTables[mp], opinion[mp]);
+        }
+        return MP.speak(opinion[mp], speechSkill[mp]);
+    }
+
+    private int calcInfluence(int mp) {
+        if (mp == NO_SPEAKER) {
+            return 0;
+        }
+        return speak(mp) * MP.vote(opinion[mp]).opinionModifier();
+    }
+
+    private int getBestSpeaker(VoteOptions side) {
+        int maxSpeech = -1;
+        int mpMax = NO_SPEAKER;
+        for (int i = 0; i < opinion.length; i++) {
+            if (!spoken[i] && MP.vote(opinion[i]) == side) {
+                int speechTotal = speak(i);
+                if (speechTotal > maxSpeech) {
+                    mpMax = i;
+                    maxSpeech = speechTotal;
+                }
+            }
+        }
+        return mpMax;
+    }
+
+    @Override
+    public void countVotes(int[] votes) {
+        int pro = 0;
+        int against = 0;
+        for (int op : opinion) {
+            if (op > MP.NEUTRAL_MAX) {
+                pro++;
+            } else if (op < -MP.NEUTRAL_MAX) {
+                against++;
+            }
+        }
+        votes[VoteOptions.PRO.ordinal()] = pro;
+        votes[VoteOptions.AGAINST.ordinal()] = against;
+        votes[VoteOptions.NEUTRAL.ordinal()] = opinion.length - pro - against;
+    }
+}
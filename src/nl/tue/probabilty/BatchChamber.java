@@ -0,0 +1,237 @@
+package nl.tue.probabilty;
+
+/**
+ * Debates a batch of independent chambers of the same size in lockstep. The state of MP m in run
+ * r is stored at m * runs + r, so picking the speakers, listening and counting votes are all
+ * short loops over the runs of the batch for one MP at a time. Those loops avoid branches on
+ * the opinions, which differ from run to run and would be mispredicted all the time. Every run
+ * follows the same rules as {@link LowerChambers} and gets exactly the votes it would get on its
+ * own.
+ * <p>
+ * As a {@link Chamber} it reports the votes of the first run of the batch.
+ */
+public class BatchChamber implements Chamber {
+
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    private static final int NO_SPEAKER = -1;
+
+    private final int size;
+    private final int runs;
+    private final int[] opinion;
+    private final double[] speechSkill;
+    private final double[] stubbornness;
+    /**
+     * 1 while the MP can still speak, 0 after it spoke.
+     */
+    private final int[] available;
+    private final int[][] speechTables;
+    private final double[][] influenceTables;
+
+    private final int[] bestPro;
+    private final int[] bestAgainst;
+    private final int[] proSpeech;
+    private final int[] againstSpeech;
+    private final int[] influence;
+    private final int[] proOpinion;
+    private final int[] againstOpinion;
+    private final int[] proVotes;
+    private final int[] againstVotes;
+
+    /**
+     * @param chambers the MPs of every run, all runs must have the same number of MPs
+     */
+    public BatchChamber(MP[][] chambers) {
+        this(chambers, new KernelTables());
+    }
+
+    /**
+     * @param tables the lookup tables of the setup the chambers were generated by
+     */
+    BatchChamber(MP[][] chambers, KernelTables tables) {
+        this.runs = chambers.length;
+        this.size = runs == 0 ? 0 : chambers[0].length;
+        opinion = new int[size * runs];
+        speechSkill = new double[size * runs];
+        stubbornness = new double[size * runs];
+        available = new int[size * runs];
+        speechTables = new int[size * runs][];
+        influenceTables = new double[size * runs][];
+        for (int r = 0; r < runs; r++) {
+            if (chambers[r].length != size) {
+                throw new IllegalArgumentException("Run " + r + " has " + chambers[r].length +
+                        " MPs instead of " + size);
+            }
+            for (int m = 0; m < size; m++) {
+                MP mp = chambers[r][m];
+                opinion[m * runs + r] = mp.getOpinion();
+                available[m * runs + r] = 1;
+                speechSkill[m * runs + r] = mp.getSpeechSkill();
+                stubbornness[m * runs + r] = mp.getStubbornness();
+                speechTables[m * runs + r] = tables.speechTable(mp.getSpeechSkill());
+                influenceTables[m * runs + r] = tables.influenceTable(mp.getStubbornness());
+            }
+        }
+        bestPro = new int[runs];
+        bestAgainst = new int[runs];
+        proSpeech = new int[runs];
+        againstSpeech = new int[runs];
+        influence = new int[runs];
+        proOpinion = new int[runs];
+        againstOpinion = new int[runs];
+        proVotes = new int[runs];
+        againstVotes = new int[runs];
+    }
+
+    public int getRuns() {
+        return runs;
+    }
+
+    /**
+     * Both speakers are picked before anyone speaks and the speeches are simply added up, so
+     * which side starts makes no difference to the outcome of a round.
+     */
+    @Override
+    public void runRound() {
+        pickSpeakers();
+
+        for (int r = 0; r < runs; r++) {
+            influence[r] = speakerInfluence(bestPro[r], r) + speakerInfluence(bestAgainst[r], r);
+        }
+
+        //the speakers do not listen to their own round, their opinion is put back afterwards
+        saveSpeakers(bestPro, proOpinion);
+        saveSpeakers(bestAgainst, againstOpinion);
+        for (int m = 0; m < size; m++) {
+            int offset = m * runs;
+            for (int r = 0; r < runs; r++) {
+                opinion[offset + r] = listen(offset + r, influence[r]);
+            }
+        }
+        restoreSpeakers(bestPro, proOpinion);
+        restoreSpeakers(bestAgainst, againstOpinion);
+    }
+
+    /**
+     * Finds the best speaker of both sides in every run in a single pass over the MPs, ties go
+     * to the MP with the lowest index like in {@link LowerChambers}.
+     */
+    private void pickSpeakers() {
+        for (int r = 0; r < runs; r++) {
+            bestPro[r] = NO_SPEAKER;
+            bestAgainst[r] = NO_SPEAKER;
+            proSpeech[r] = -1;
+            againstSpeech[r] = -1;
+        }
+        for (int m = 0; m < size; m++) {
+            int offset = m * runs;
+            for (int r = 0; r < runs; r++) {
+                int i = offset + r;
+                int op = opinion[i];
+                //the speech if the MP can speak for the side, -1 otherwise
+                int speech = speak(i) + 1;
+                int pro = (speech * (isPro(op) & available[i])) - 1;
+                int against = (speech * (isAgainst(op) & available[i])) - 1;
+                //a new best speaker is rare, so these branches are easy to predict
+                if (pro > proSpeech[r]) {
+                    proSpeech[r] = pro;
+                    bestPro[r] = m;
+                }
+                if (against > againstSpeech[r]) {
+                    againstSpeech[r] = against;
+                    bestAgainst[r] = m;
+                }
+            }
+        }
+        for (int r = 0; r < runs; r++) {
+            if (bestPro[r] != NO_SPEAKER) {
+                available[bestPro[r] * runs + r] = 0;
+            }
+            if (bestAgainst[r] != NO_SPEAKER) {
+                available[bestAgainst[r] * runs + r] = 0;
+            }
+        }
+    }
+
+    /**
+     * 1 if the opinion votes pro, 0 otherwise.
+     */
+    private static int isPro(int opinion) {
+        return (MP.NEUTRAL_MAX - opinion) >>> 31;
+    }
+
+    /**
+     * 1 if the opinion votes against, 0 otherwise.
+     */
+    private static int isAgainst(int opinion) {
+        return (opinion + MP.NEUTRAL_MAX) >>> 31;
+    }
+
+    private int speakerInfluence(int mp, int run) {
+        if (mp == NO_SPEAKER) {
+            return 0;
+        }
+        int i = mp * runs + run;
+        return speak(i) * MP.vote(opinion[i]).opinionModifier();
+    }
+
+    private int speak(int i) {
+        if (speechTables[i] != null) {
+            return KernelTables.speak(speechTables[i], opinion[i]);
+        }
+        return MP.speak(opinion[i], speechSkill[i]);
+    }
+
+    private int listen(int i, int speech) {
+        if (influenceTables[i] != null) {
+            return KernelTables.listen(influenceTables[i], opinion[i], stubbornness[i], speech);
+        }
+        return MP.listen(opinion[i], stubbornness[i], speech);
+    }
+
+    private void saveSpeakers(int[] speakers, int[] opinions) {
+        for (int r = 0; r < runs; r++) {
+            if (speakers[r] != NO_SPEAKER) {
+                opinions[r] = opinion[speakers[r] * runs + r];
+            }
+        }
+    }
+
+    private void restoreSpeakers(int[] speakers, int[] opinions) {
+        for (int r = 0; r < runs; r++) {
+            if (speakers[r] != NO_SPEAKER) {
+                opinion[speakers[r] * runs + r] = opinions[r];
+            }
+        }
+    }
+
+    /**
+     * Counts the votes of every run, votes[run] is indexed by vote option ordinal.
+     */
+    public void countVotes(int[][] votes) {
+        for (int r = 0; r < runs; r++) {
+            proVotes[r] = 0;
+            againstVotes[r] = 0;
+        }
+        for (int m = 0; m < size; m++) {
+            int offset = m * runs;
+            for (int r = 0; r < runs; r++) {
+                int op = opinion[offset + r];
+                proVotes[r] += isPro(op);
+                againstVotes[r] += isAgainst(op);
+            }
+        }
+        for (int r = 0; r < runs; r++) {
+            votes[r][VoteOptions.PRO.ordinal()] = proVotes[r];
+            votes[r][VoteOptions.AGAINST.ordinal()] = againstVotes[r];
+            votes[r][VoteOptions.NEUTRAL.ordinal()] = size - proVotes[r] - againstVotes[r];
+        }
+    }
+
+    @Override
+    public void countVotes(int[] votes) {
+        int[][] all = new int[runs][Results.DATA_PER_ROUND];
+        countVotes(all);
+        System.arraycopy(all[0], 0, votes, 0, votes.length);
+    }
+}
@@ -0,0 +1,251 @@
+package nl.tue.probabilty;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chamber that groups MPs with the same state into buckets. Listening only depends on the
+ * opinion, the stubbornness and the speech, so every bucket listens once per round no matter how
+ * many MPs it holds, and a bucket only loses a member when that member is picked as a speaker.
+ * Buckets that end up in the same state are merged again after every round. It follows the same
+ * rules as {@link LowerChambers}, chambers where many MPs share a state debate in time
+ * proportional to the number of distinct states instead of the number of MPs.
+ */
+public class BucketChamber implements Chamber {
+
+    private final int size;
+    private final VoteOptions startSide;
+    private final VoteOptions secondSide;
+
+    /**
+     * MPs that can still speak, every bucket keeps the indices of its members sorted so the
+     * lowest index wins ties between equally good speakers.
+     */
+    private List<Bucket> speakers = new ArrayList<>();
+    /**
+     * MPs that already spoke, they never speak again so only their number matters.
+     */
+    private List<Bucket> spoken = new ArrayList<>();
+
+    private static class Bucket {
+        private int opinion;
+        private final double speechSkill;
+        private final double stubbornness;
+        private int[] members;
+        private int head;
+        private int count;
+
+        private Bucket(int opinion, double speechSkill, double stubbornness) {
+            this.opinion = opinion;
+            this.speechSkill = speechSkill;
+            this.stubbornness = stubbornness;
+        }
+
+        private int first() {
+            return members[head];
+        }
+
+        private void removeFirst() {
+            head++;
+            count--;
+        }
+
+        private void absorb(Bucket other) {
+            if (members == null) {
+                count += other.count;
+                return;
+            }
+            //merge the sorted member lists
+            int[] merged = new int[count + other.count];
+            int i = head;
+            int j = other.head;
+            int end = head + count;
+            int otherEnd = other.head + other.count;
+            for (int k = 0; k < merged.length; k++) {
+                if (j >= otherEnd || (i < end && members[i] < other.members[j])) {
+                    merged[k] = members[i++];
+                } else {
+                    merged[k] = other.members[j++];
+                }
+            }
+            members = merged;
+            head = 0;
+            count = merged.length;
+        }
+    }
+
+    private static class State {
+        private final int opinion;
+        private final long speechSkill;
+        private final long stubbornness;
+
+        private State(int opinion, double speechSkill, double stubbornness) {
+            this.opinion = opinion;
+            this.speechSkill = Double.doubleToLongBits(speechSkill);
+            this.stubbornness = Double.doubleToLongBits(stubbornness);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof State)) {
+                return false;
+            }
+            State state = (State) o;
+            return opinion == state.opinion && speechSkill == state.speechSkill &&
+                    stubbornness == state.stubbornness;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = opinion;
+            result = 31 * result + Long.hashCode(speechSkill);
+            return 31 * result + Long.hashCode(stubbornness);
+        }
+    }
+
+    public BucketChamber(MP[] mps, VoteOptions startSide) {
+        this.size = mps.length;
+        this.startSide = startSide;
+        this.secondSide = startSide.otherSide();
+
+        //first count the members of every state, then fill in their indices in order
+        Map<State, Bucket> buckets = new HashMap<>();
+        Bucket[] bucketOf = new Bucket[mps.length];
+        for (int i = 0; i < mps.length; i++) {
+            MP mp = mps[i];
+            State state = new State(mp.getOpinion(), mp.getSpeechSkill(), mp.getStubbornness());
+            Bucket bucket = buckets.get(state);
+            if (bucket == null) {
+                bucket = new Bucket(mp.getOpinion(), mp.getSpeechSkill(), mp.getStubbornness());
+                buckets.put(state, bucket);
+                speakers.add(bucket);
+            }
+            bucket.count++;
+            bucketOf[i] = bucket;
+        }
+        for (Bucket bucket : speakers) {
+            bucket.members = new int[bucket.count];
+        }
+        for (int i = 0; i < mps.length; i++) {
+            Bucket bucket = bucketOf[i];
+            bucket.members[bucket.head++] = i;
+        }
+        for (Bucket bucket : speakers) {
+            bucket.head = 0;
+        }
+    }
+
+    /**
+     * The number of distinct states that are currently tracked.
+     */
+    public int getBucketCount() {
+        return speakers.size() + spoken.size();
+    }
+
+    @Override
+    public void runRound() {
+        Bucket first = getBestSpeaker(startSide);
+        Bucket other = getBestSpeaker(secondSide);
+
+        int totalInfluence = calcInfluence(first) + calcInfluence(other);
+
+        //the speakers do not listen to the round they speak in
+        Bucket firstSpoke = takeSpeaker(first);
+        Bucket otherSpoke = takeSpeaker(other);
+
+        for (Bucket bucket : speakers) {
+            bucket.opinion = MP.listen(bucket.opinion, bucket.stubbornness, totalInfluence);
+        }
+        for (Bucket bucket : spoken) {
+            bucket.opinion = MP.listen(bucket.opinion, bucket.stubbornness, totalInfluence);
+        }
+        if (firstSpoke != null) {
+            spoken.add(firstSpoke);
+        }
+        if (otherSpoke != null) {
+            spoken.add(otherSpoke);
+        }
+
+        speakers = merge(speakers);
+        spoken = merge(spoken);
+    }
+
+    private Bucket getBestSpeaker(VoteOptions side) {
+        int maxSpeech = -1;
+        Bucket best = null;
+        for (Bucket bucket : speakers) {
+            if (bucket.count == 0 || MP.vote(bucket.opinion) != side) {
+                continue;
+            }
+            int speech = MP.speak(bucket.opinion, bucket.speechSkill);
+            if (speech > maxSpeech || (speech == maxSpeech && bucket.first() < best.first())) {
+                best = bucket;
+                maxSpeech = speech;
+            }
+        }
+        return best;
+    }
+
+    private static int calcInfluence(Bucket speaker) {
+        if (speaker == null) {
+            return 0;
+        }
+        return MP.speak(speaker.opinion, speaker.speechSkill) *
+                MP.vote(speaker.opinion).opinionModifier();
+    }
+
+    /**
+     * Takes the speaker out of its bucket and returns it as a bucket of its own.
+     */
+    private static Bucket takeSpeaker(Bucket bucket) {
+        if (bucket == null) {
+            return null;
+        }
+        bucket.removeFirst();
+        //the speech skill no longer matters, leaving it out lets more of them share a bucket
+        Bucket speaker = new Bucket(bucket.opinion, 0.0, bucket.stubbornness);
+        speaker.count = 1;
+        return speaker;
+    }
+
+    /**
+     * Merges the buckets that are in the same state and drops the empty ones.
+     */
+    private static List<Bucket> merge(List<Bucket> buckets) {
+        Map<State, Bucket> byState = new HashMap<>(buckets.size() * 2);
+        List<Bucket> merged = new ArrayList<>(buckets.size());
+        for (Bucket bucket : buckets) {
+            if (bucket.count == 0) {
+                continue;
+            }
+            State state = new State(bucket.opinion, bucket.speechSkill, bucket.stubbornness);
+            Bucket same = byState.putIfAbsent(state, bucket);
+            if (same == null) {
+                merged.add(bucket);
+            } else {
+                same.absorb(bucket);
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public void countVotes(int[] votes) {
+        int pro = 0;
+        int against = 0;
+        for (List<Bucket> buckets : List.of(speakers, spoken)) {
+            for (Bucket bucket : buckets) {
+                if (bucket.opinion > MP.NEUTRAL_MAX) {
+                    pro += bucket.count;
+                } else if (bucket.opinion < -MP.NEUTRAL_MAX) {
+                    against += bucket.count;
+                }
+            }
+        }
+        votes[VoteOptions.PRO.ordinal()] = pro;
+        votes[VoteOptions.AGAINST.ordinal()] = against;
+        votes[VoteOptions.NEUTRAL.ordinal()] = size - pro - against;
+    }
+}
@@ -0,0 +1,15 @@
+package nl.tue.probabilty;
+
+/**
+ * A chamber in which the MPs debate, one round lets the best speaker of each side speak to all
+ * other MPs.
+ */
+public interface Chamber {
+
+    void runRound();
+
+    /**
+     * Counts the current votes into the given array, indexed by the ordinal of the vote option.
+     */
+    void countVotes(int[] votes);
+}
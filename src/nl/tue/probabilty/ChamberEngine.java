@@ -0,0 +1,88 @@
+package nl.tue.probabilty;
+
+import java.lang.reflect.Constructor;
+
+public enum ChamberEngine {
+    OBJECT,
+    ARRAY,
+    /**
+     * The array chamber with speech and influence lookup tables.
+     */
+    TABLE,
+    BUCKET,
+    /**
+     * The array chamber listening with the Vector API, see VectorChamber in src-vector. Runs as
+     * {@link #ARRAY} when that class or the jdk.incubator.vector module is not available.
+     */
+    VECTOR,
+    /**
+     * Debates {@link BatchChamber#DEFAULT_BATCH_SIZE} runs in lockstep when used by
+     * {@link Results}, a single chamber is a batch of one run.
+     */
+    BATCH;
+
+    /**
+     * Creates a chamber, {@link #TABLE} and {@link #BATCH} only share lookup tables between the
+     * MPs of this chamber.
+     */
+    public Chamber create(MP[] mps, VoteOptions startSide) {
+        return create(mps, startSide, new KernelTables());
+    }
+
+    /**
+     * @param tables the lookup tables of the setup the MPs were generated by, so they are shared
+     *               by all chambers of that setup
+     */
+    Chamber create(MP[] mps, VoteOptions startSide, KernelTables tables) {
+        switch (this) {
+            case ARRAY:
+                return new ArrayChamber(mps, startSide);
+            case TABLE:
+                return new ArrayChamber(mps, startSide, tables);
+            case BUCKET:
+                return new BucketChamber(mps, startSide);
+            case VECTOR:
+                return VectorSupport.create(mps, startSide);
+            case BATCH:
+                return new BatchChamber(new MP[][]{mps}, tables);
+        }
+        return new LowerChambers(mps, startSide);
+    }
+
+    /**
+     * Whether {@link #VECTOR} really uses the Vector API instead of its scalar fallback.
+     */
+    public static boolean isVectorAvailable() {
+        return VectorSupport.CONSTRUCTOR != null;
+    }
+
+    private static class VectorSupport {
+        private static final Constructor<? extends Chamber> CONSTRUCTOR = find();
+
+        private static Constructor<? extends Chamber> find() {
+            try {
+                Constructor<? extends Chamber> constructor = Class
+                        .forName("nl.tue.probabilty.VectorChamber")
+                        .asSubclass(Chamber.class)
+                        .getConstructor(MP[].class, VoteOptions.class);
+                //the module is only resolved when the class is used, so try it once
+                constructor.newInstance(new MP[]{new MP(0, 0.0, 0.0)}, VoteOptions.PRO)
+                        .runRound();
+                return constructor;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return null;
+            }
+        }
+
+        private static Chamber create(MP[] mps, VoteOptions startSide) {
+            if (CONSTRUCTOR == null) {
+                return new ArrayChamber(mps, startSide);
+            }
+            try {
+                return CONSTRUCTOR.newInstance(mps, startSide);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a vector chamber", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package nl.tue.probabilty;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the votes of chambers that were already simulated. A debate has no randomness of its
+ * own, so a run that generates exactly the same MPs as an earlier run gets exactly the same votes.
+ * Setups that never repeat a chamber would only pay for the lookups, so the memo turns itself off
+ * when the first runs do not produce a single hit.
+ */
+final class ChamberMemo {
+
+    private static final int PROBE_RUNS = 64;
+    private static final int MAX_ENTRIES = 1024;
+    private static final long MAX_KEY_VALUES = 1L << 21;
+
+    private final Map<Key, int[][]> votes = new ConcurrentHashMap<>();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final int maxEntries;
+    private volatile boolean enabled;
+
+    ChamberMemo(int chamberSize) {
+        maxEntries = (int) Math.min(MAX_ENTRIES, MAX_KEY_VALUES / (3L * chamberSize));
+        enabled = maxEntries > 0;
+    }
+
+    /**
+     * Returns the key of the chamber, or null if the memo is not used (anymore).
+     */
+    Key key(MP[] mps) {
+        return enabled ? new Key(mps) : null;
+    }
+
+    /**
+     * Copies the remembered votes of the chamber into the array.
+     *
+     * @return false if the chamber was not simulated before
+     */
+    boolean lookup(Key key, int[][] result) {
+        int[][] known = votes.get(key);
+        long done = lookups.incrementAndGet();
+        if (known == null) {
+            if (done >= PROBE_RUNS && hits.get() == 0) {
+                //no chamber repeated so far, they most likely never do
+                enabled = false;
+                votes.clear();
+            }
+            return false;
+        }
+        hits.incrementAndGet();
+        for (int i = 0; i < known.length; i++) {
+            System.arraycopy(known[i], 0, result[i], 0, known[i].length);
+        }
+        return true;
+    }
+
+    void store(Key key, int[][] result) {
+        if (!enabled || votes.size() >= maxEntries) {
+            return;
+        }
+        int[][] copy = new int[result.length][];
+        for (int i = 0; i < result.length; i++) {
+            copy[i] = result[i].clone();
+        }
+        votes.putIfAbsent(key, copy);
+    }
+
+    static final class Key {
+        private final long[] values;
+        private final int hash;
+
+        private Key(MP[] mps) {
+            values = new long[3 * mps.length];
+            for (int i = 0; i < mps.length; i++) {
+                values[3 * i] = mps[i].getOpinion();
+                values[3 * i + 1] = Double.doubleToLongBits(mps[i].getSpeechSkill());
+                values[3 * i + 2] = Double.doubleToLongBits(mps[i].getStubbornness());
+            }
+            hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash &&
+                    Arrays.equals(((Key) o).values, values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package nl.tue.probabilty;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Counts how often every integer value occurred. The bins only cover the range of values that
+ * has been seen so far, so a histogram of vote counts stays small even for very big chambers.
+ */
+public class CountHistogram {
+
+    private static final int INITIAL_BINS = 16;
+
+    private long[] counts = new long[0];
+    private int offset;
+
+    private long total;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    public void add(int value) {
+        add(value, 1);
+    }
+
+    public void add(int value, long count) {
+        if (count <= 0) {
+            return;
+        }
+        ensureRange(value);
+        counts[value - offset] += count;
+        total += count;
+        sum += value * count;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(CountHistogram other) {
+        if (other.total == 0) {
+            return;
+        }
+        ensureRange(other.min);
+        ensureRange(other.max);
+        for (int value = other.min; value <= other.max; value++) {
+            counts[value - offset] += other.counts[value - other.offset];
+        }
+        total += other.total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    private void ensureRange(int value) {
+        if (counts.length == 0) {
+            counts = new long[INITIAL_BINS];
+            offset = value;
+            return;
+        }
+        if (value >= offset && value - offset < counts.length) {
+            return;
+        }
+        int high = offset + counts.length - 1;
+        //at least double the bins so a run of growing values does not copy every time
+        int low;
+        int length;
+        if (value < offset) {
+            length = Math.max(high - value + 1, counts.length * 2);
+            low = high - length + 1;
+        } else {
+            length = Math.max(value - offset + 1, counts.length * 2);
+            low = offset;
+        }
+        long[] grown = new long[length];
+        System.arraycopy(counts, 0, grown, offset - low, counts.length);
+        counts = grown;
+        offset = low;
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return total == 0 ? 0.0 : (double) sum / total;
+    }
+
+    /**
+     * Returns the value at the given index as if all values were sorted, the index is clamped to
+     * the values that exist.
+     */
+    public int get(long index) {
+        if (total == 0) {
+            throw new IllegalStateException("No values in the histogram");
+        }
+        long remaining = Math.max(0, Math.min(index, total - 1));
+        for (int value = min; value <= max; value++) {
+            remaining -= counts[value - offset];
+            if (remaining < 0) {
+                return value;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * The number of values that are equal to the given value.
+     */
+    public long count(int value) {
+        if (value < offset || value - offset >= counts.length) {
+            return 0;
+        }
+        return counts[value - offset];
+    }
+
+    /**
+     * Writes the counts of the seen range, {@link #readFrom(DataInput)} reads them back.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(total);
+        if (total == 0) {
+            return;
+        }
+        out.writeInt(min);
+        out.writeInt(max);
+        for (int value = min; value <= max; value++) {
+            out.writeLong(counts[value - offset]);
+        }
+    }
+
+    public static CountHistogram readFrom(DataInput in) throws IOException {
+        CountHistogram histogram = new CountHistogram();
+        long total = in.readLong();
+        if (total == 0) {
+            return histogram;
+        }
+        int min = in.readInt();
+        int max = in.readInt();
+        if (max < min) {
+            throw new IOException("Invalid histogram range [" + min + ", " + max + "]");
+        }
+        for (int value = min; value <= max; value++) {
+            histogram.add(value, in.readLong());
+        }
+        if (histogram.total != total) {
+            throw new IOException("Histogram has " + histogram.total + " values instead of " +
+                    total);
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,183 @@
+package nl.tue.probabilty;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tilted opinion distributions for importance sampling. Every opinion distribution of a setup is
+ * replaced by the same distribution with its mean moved by a number of standard deviations, so
+ * runs that are rare under the setup become common. The likelihood ratio of the drawn opinions,
+ * the density under the setup divided by the density under the tilt, is the weight that makes
+ * the weighted outcomes of the tilted runs an unbiased estimate for the setup.
+ * <p>
+ * A few runs that are unlikely under the tilt but not under the setup get enormous weights, which
+ * makes the estimates erratic. With defensive importance sampling a fraction of the runs draws
+ * from the setup itself and every run is weighted against the mixture of both, which keeps the
+ * weights below one over that fraction.
+ * <p>
+ * The opinions drawn on a thread are recorded between {@link #start()} and reading the returned
+ * {@link Draws}, so one instance can be used by several threads at the same time.
+ */
+public class ImportanceSampling {
+
+    private final Map<Setup.NormalDistribution, Double> shifts;
+    private final double defaultShift;
+    private final Map<Setup.NormalDistribution, Setup.NormalDistribution> proposals =
+            new ConcurrentHashMap<>();
+    private final ThreadLocal<Draws> draws = new ThreadLocal<>();
+
+    /**
+     * No tilt, every opinion is drawn from the distributions of the setup.
+     */
+    public ImportanceSampling() {
+        this(0);
+    }
+
+    /**
+     * Moves the mean of every opinion distribution by the given number of standard deviations.
+     */
+    public ImportanceSampling(double shift) {
+        this(new HashMap<>(), shift);
+    }
+
+    private ImportanceSampling(Map<Setup.NormalDistribution, Double> shifts, double defaultShift) {
+        if (Double.isNaN(defaultShift) || Double.isInfinite(defaultShift)) {
+            throw new IllegalArgumentException("Invalid shift " + defaultShift);
+        }
+        this.shifts = shifts;
+        this.defaultShift = defaultShift;
+    }
+
+    /**
+     * The number of standard deviations the mean of the distribution is moved by.
+     */
+    public double getShift(Setup.NormalDistribution distribution) {
+        return shifts.getOrDefault(distribution, defaultShift);
+    }
+
+    private Setup.NormalDistribution tilted(Setup.NormalDistribution distribution) {
+        return proposals.computeIfAbsent(distribution, d -> d.shifted(getShift(d)));
+    }
+
+    /**
+     * The distribution the run that is recorded on this thread draws the opinion from.
+     */
+    Setup.NormalDistribution proposal(Setup.NormalDistribution distribution) {
+        return current().tilted ? tilted(distribution) : distribution;
+    }
+
+    /**
+     * Starts recording the opinions drawn on this thread, the returned draws are filled in until
+     * the next call on the same thread.
+     *
+     * @param tilted whether the run draws from the tilt or from the setup itself
+     */
+    Draws start(boolean tilted) {
+        Draws started = new Draws(tilted);
+        draws.set(started);
+        return started;
+    }
+
+    void record(Setup.NormalDistribution distribution, double value) {
+        current().add(distribution, tilted(distribution), value);
+    }
+
+    private Draws current() {
+        Draws current = draws.get();
+        if (current == null) {
+            throw new IllegalStateException("Opinions drawn with a tilt must be recorded");
+        }
+        return current;
+    }
+
+    /**
+     * The opinions drawn for one run.
+     */
+    static class Draws {
+
+        private final boolean tilted;
+        //the log of the density under the setup divided by the density under the tilt
+        private double logRatio;
+        //per distribution the number of values and the sum of their standard scores
+        private final Map<Setup.NormalDistribution, double[]> scores = new HashMap<>(4);
+
+        private Draws(boolean tilted) {
+            this.tilted = tilted;
+        }
+
+        private void add(Setup.NormalDistribution distribution,
+                         Setup.NormalDistribution proposal, double value) {
+            logRatio += distribution.logDensityRatio(proposal, value);
+            double[] sums = scores.computeIfAbsent(distribution, d -> new double[2]);
+            sums[0]++;
+            sums[1] += (value - distribution.getMean()) / distribution.getStdDeviation();
+        }
+
+        /**
+         * The likelihood ratio of the run, the density of its opinions under the setup divided
+         * by their density under the tilt.
+         */
+        double getWeight() {
+            return Math.exp(logRatio);
+        }
+
+        /**
+         * The density of the opinions under the setup divided by their density under the mixture
+         * that draws the given fraction of the runs from the setup and the others from the tilt.
+         */
+        double getWeight(double defensiveFraction) {
+            if (defensiveFraction == 0) {
+                return getWeight();
+            }
+            return 1 / (defensiveFraction + (1 - defensiveFraction) * Math.exp(-logRatio));
+        }
+    }
+
+    /**
+     * Fits the tilt of the cross entropy method: the shift of every distribution becomes the
+     * weighted mean standard score of its opinions in the runs that are added.
+     */
+    static class Fit {
+
+        private final Map<Setup.NormalDistribution, double[]> sums = new LinkedHashMap<>();
+
+        void add(Draws draws, double weight) {
+            for (Map.Entry<Setup.NormalDistribution, double[]> entry : draws.scores.entrySet()) {
+                double[] total = sums.computeIfAbsent(entry.getKey(), d -> new double[2]);
+                total[0] += weight * entry.getValue()[0];
+                total[1] += weight * entry.getValue()[1];
+            }
+        }
+
+        ImportanceSampling result() {
+            Map<Setup.NormalDistribution, Double> shifts = new LinkedHashMap<>();
+            for (Map.Entry<Setup.NormalDistribution, double[]> entry : sums.entrySet()) {
+                double[] total = entry.getValue();
+                if (total[0] > 0) {
+                    shifts.put(entry.getKey(), total[1] / total[0]);
+                }
+            }
+            return new ImportanceSampling(shifts, 0);
+        }
+    }
+
+    /**
+     * The shifts of the distributions that were fitted, in standard deviations, in the semicolon
+     * separated layout of the results.
+     */
+    public String format() {
+        Locale locale = ReportFormat.SEMICOLON.getLocale();
+        StringBuilder builder = new StringBuilder("Tilt");
+        for (Map.Entry<Setup.NormalDistribution, Double> entry : shifts.entrySet()) {
+            builder.append(";");
+            NumberAppender.appendFixed(builder, entry.getKey().getMean(), 1, locale);
+            builder.append(" + ");
+            NumberAppender.appendScientific(builder, entry.getValue(), 0, locale);
+            builder.append(" sd");
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package nl.tue.probabilty;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleFunction;
+
+/**
+ * Lookup tables for {@link MP#speak(int, double)} and {@link MP#listen(int, double, int)},
+ * indexed by the absolute opinion. A speech table holds the exact speech of every opinion for one
+ * speech skill. An influence table holds, for one stubbornness, the factor the speech is
+ * multiplied with, so listening needs no division. That product can round differently than the
+ * original formula only when it is (almost) an integer, those cases fall back to the original
+ * formula so the results are the same bit for bit.
+ * <p>
+ * The tables belong to one setup, or to one chamber, and can be used by several threads at the
+ * same time. A table is only built for a value that is asked for a second time, so values that
+ * every MP has for itself never get one. Once more than {@link #MAX_VALUES} distinct values of a
+ * kind were asked for, the values are considered continuous and that kind gets no tables at all.
+ * Without a table the original formulas are used.
+ */
+final class KernelTables {
+
+    static final int MAX_VALUES = 64;
+    private static final double INTEGER_MARGIN = 1e-9;
+
+    //marks a value that was asked for once
+    private static final int[] SEEN_SPEECH = new int[0];
+    private static final double[] SEEN_INFLUENCE = new double[0];
+
+    private final Map<Long, int[]> speechTables = new ConcurrentHashMap<>();
+    private final Map<Long, double[]> influenceTables = new ConcurrentHashMap<>();
+    private volatile boolean continuousSpeech;
+    private volatile boolean continuousStubbornness;
+
+    /**
+     * Returns the speech of every absolute opinion with the given speech skill, or null if it has
+     * no table.
+     */
+    int[] speechTable(double speechSkill) {
+        if (continuousSpeech) {
+            return null;
+        }
+        int[] table = lookup(speechTables, SEEN_SPEECH, speechSkill, KernelTables::buildSpeech);
+        if (speechTables.size() > MAX_VALUES) {
+            continuousSpeech = true;
+            speechTables.clear();
+        }
+        return table;
+    }
+
+    /**
+     * Returns the influence factor of every absolute opinion with the given stubbornness, or null
+     * if it has no table.
+     */
+    double[] influenceTable(double stubbornness) {
+        if (continuousStubbornness) {
+            return null;
+        }
+        double[] table = lookup(influenceTables, SEEN_INFLUENCE, stubbornness,
+                KernelTables::buildInfluence);
+        if (influenceTables.size() > MAX_VALUES) {
+            continuousStubbornness = true;
+            influenceTables.clear();
+        }
+        return table;
+    }
+
+    private static <T> T lookup(Map<Long, T> tables, T seen, double value,
+                                DoubleFunction<T> build) {
+        Long key = Double.doubleToLongBits(value);
+        T table = tables.putIfAbsent(key, seen);
+        if (table == null) {
+            return null;
+        }
+        if (table == seen) {
+            T built = build.apply(value);
+            tables.replace(key, seen, built);
+            return built;
+        }
+        return table;
+    }
+
+    private static int[] buildSpeech(double speechSkill) {
+        int[] table = new int[MP.OPINION_MAX + 1];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = MP.speak(i, speechSkill);
+        }
+        return table;
+    }
+
+    private static double[] buildInfluence(double stubbornness) {
+        double[] table = new double[MP.OPINION_MAX + 1];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = stubbornness * 2 * (MP.OPINION_MAX - i) / (2 * i + MP.OPINION_MAX);
+        }
+        return table;
+    }
+
+    static int speak(int[] table, int opinion) {
+        return table[Math.abs(opinion)];
+    }
+
+    /**
+     * Same as {@link MP#listen(int, double, int)} using the influence table of the stubbornness.
+     */
+    static int listen(double[] table, int opinion, double stubbornness, int speech) {
+        if (speech == 0) {
+            return opinion;
+        }
+        double influence = table[Math.abs(opinion)] * speech;
+        int truncated = (int) (influence + INTEGER_MARGIN);
+        if (truncated != (int) (influence - INTEGER_MARGIN)) {
+            //the truncation could go either way, let the original formula decide
+            return MP.listen(opinion, stubbornness, speech);
+        }
+        return MP.checkOpinionBounds(opinion + truncated);
+    }
+}
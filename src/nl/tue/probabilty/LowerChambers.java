@@ -1,34 +1,63 @@
 package nl.tue.probabilty;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.util.BitSet;
 import java.util.Random;
+import java.util.stream.IntStream;
 
-public class LowerChambers {
+public class LowerChambers implements Chamber {
 
     public static final int NUM_MP = 150;
     public static final int SPEAKERS_PER_SIDE = 10;
-    private static VoteOptions startSide = VoteOptions.PRO;
-    private static VoteOptions secondSide = startSide.otherSide();
+
+    private final VoteOptions startSide;
+    private final VoteOptions secondSide;
+
+    private static final int NO_SPEAKER = -1;
 
     private final MP[] mps;
 
-    private final List<MP> spoken = new ArrayList<>(SPEAKERS_PER_SIDE * 2);
+    private final BitSet spoken;
+    private final SpeakerIndex speakers;
+    private final int[] changed;
 
     public LowerChambers(Setup setup, int run) {
-        mps = setup.generateMPs(run);
+        this(setup, run, VoteOptions.PRO);
+    }
+
+    public LowerChambers(Setup setup, int run, VoteOptions startSide) {
+        this(setup.generateMPs(run), startSide);
+    }
+
+    public LowerChambers(MP[] mps, VoteOptions startSide) {
+        this.mps = mps;
+        this.startSide = startSide;
+        this.secondSide = startSide.otherSide();
+
+        spoken = new BitSet(mps.length);
+        changed = new int[mps.length];
+        speakers = new SpeakerIndex(mps.length);
+        for (int i = 0; i < mps.length; i++) {
+            speakers.put(i, mps[i].vote(), mps[i].speak());
+        }
+        speakers.rebuild();
     }
 
     public LowerChambers() {
+        this(randomMPs(), VoteOptions.PRO);
+
+        System.out.println("Initial setup state:");
+        printVoteResult();
+    }
+
+    private static MP[] randomMPs() {
         Random rand = new Random();
         //initialize the mps
-        mps = new MP[NUM_MP];
+        MP[] mps = new MP[NUM_MP];
         for(int i = 0; i < NUM_MP; i++) {
             mps[i] = new MP(rand.nextInt(MP.OPINION_MAX/2) - MP.OPINION_MAX/4 - 1, rand.nextDouble(), 1.0);
         }
-
-        System.out.println("Initial setup state:");
-        printVoteResult();
+        return mps;
     }
 
     private void start() {
@@ -41,51 +70,62 @@ public class LowerChambers {
         printVoteResult();
     }
 
+    @Override
     public void runRound() {
-        MP first = getBestSpeaker(startSide);
-        MP other = getBestSpeaker(secondSide);
+        int first = getBestSpeaker(startSide);
+        int other = getBestSpeaker(secondSide);
 
-        if (first != null) {
-            spoken.add(first);
-        }
-
-        if (other != null) {
-            spoken.add(other);
-        }
+        markSpoken(first);
+        markSpoken(other);
 
         int totalInfluence = calcInfluence(first) + calcInfluence(other);
 
         speakToOthers(totalInfluence, first, other);
     }
 
-    private void speakToOthers(int influence, MP first, MP other) {
-        for(int j = 0; j < NUM_MP; j++) {
-            if (mps[j] != first && mps[j] != other) {
+    private void markSpoken(int mp) {
+        if (mp != NO_SPEAKER) {
+            spoken.set(mp);
+            speakers.remove(mp);
+        }
+    }
+
+    private void speakToOthers(int influence, int first, int other) {
+        int changedCount = 0;
+        for(int j = 0; j < mps.length; j++) {
+            if (j != first && j != other) {
+                int before = mps[j].getOpinion();
                 mps[j].listen(influence);
+                if (mps[j].getOpinion() != before && !spoken.get(j)) {
+                    changed[changedCount++] = j;
+                }
+            }
+        }
+
+        //only the MPs whose opinion changed can have a different speech or side
+        if (changedCount > speakers.getRebuildThreshold()) {
+            for (int i = 0; i < changedCount; i++) {
+                MP mp = mps[changed[i]];
+                speakers.put(changed[i], mp.vote(), mp.speak());
+            }
+            speakers.rebuild();
+        } else {
+            for (int i = 0; i < changedCount; i++) {
+                MP mp = mps[changed[i]];
+                speakers.update(changed[i], mp.vote(), mp.speak());
             }
         }
     }
 
-    private int calcInfluence(MP mp) {
-        if (mp == null) {
+    private int calcInfluence(int mp) {
+        if (mp == NO_SPEAKER) {
             return 0;
         }
-        return mp.speak() * mp.vote().opinionModifier();
+        return mps[mp].speak() * mps[mp].vote().opinionModifier();
     }
 
-    private MP getBestSpeaker(VoteOptions side) {
-        int maxSpeech = -1;
-        MP mpMax = null;
-        for(MP mp: mps) {
-            if (mp.vote() == side && !spoken.contains(mp)) {
-                int speechTotal = mp.speak();
-                if (speechTotal > maxSpeech) {
-                    mpMax = mp;
-                    maxSpeech = speechTotal;
-                }
-            }
-        }
-        return mpMax;
+    private int getBestSpeaker(VoteOptions side) {
+        return speakers.best(side);
     }
 
     private void printVoteResult() {
@@ -105,9 +145,10 @@ public class LowerChambers {
                     break;
             }
         }
-        System.out.printf("Pro:     (%3d/%3d) %5.2f%%%n", pro, NUM_MP, ((double) (pro)) / NUM_MP);
-        System.out.printf("Against: (%3d/%3d) %5.2f%%%n", against, NUM_MP, ((double) (against)) / NUM_MP);
-        System.out.printf("Neutral: (%3d/%3d) %5.2f%%%n", neutral, NUM_MP, ((double) (neutral)) / NUM_MP);
+        int total = mps.length;
+        System.out.printf("Pro:     (%3d/%3d) %5.2f%%%n", pro, total, ((double) (pro)) / total);
+        System.out.printf("Against: (%3d/%3d) %5.2f%%%n", against, total, ((double) (against)) / total);
+        System.out.printf("Neutral: (%3d/%3d) %5.2f%%%n", neutral, total, ((double) (neutral)) / total);
 
         if (pro > against) {
             System.out.println("Result: PRO wins");
@@ -121,52 +162,56 @@ public class LowerChambers {
 
     public Results.RoundResult getCurrentResult() {
         int[] results = new int[Results.DATA_PER_ROUND];
-        for (int i = 0; i < NUM_MP; i++) {
-            results[mps[i].vote().ordinal()]++;
-        }
+        countVotes(results);
         return new Results.RoundResult(results);
     }
 
-    public static void setStartSide(VoteOptions start) {
-        startSide = start;
-        secondSide = start.otherSide();
-    }
-
-    public static void main(String[] args) {
-        new Results(Setup.getDefaultConsistency()).runToFile("consistency", true, "proving");
-
-        for (int i = 0; i < 10; i++) {
-            new Results(Setup.getDefault()).runToFile("normal-disted-opinion-" + i, true,
-                    "proving");
+    @Override
+    public void countVotes(int[] votes) {
+        for (int i = 0; i < votes.length; i++) {
+            votes[i] = 0;
         }
-
-        for(int i = 1; i < 25; i++) {
-            new Results(new Setup.RootNTestSetup(i,0, 1.0)).runToFile("root-n-" +
-                    "-accepting-" + i, "rootN");
-            new Results(new Setup.RootNTestSetup(i,0)).runToFile("root-n-" +
-                    "-normStubb-" + i, "rootN");
-        }
-
-
-        for (int i = 5; i <= 75; i+= 5) {
-            new Results(new Setup.StubbornMinority(i, 400.0, 150.0, -600.0, 100.0,
-                    1.0, 0.1)).runToFile("stub-minor-" + i, "stubMin");
+        for (MP mp : mps) {
+            votes[mp.vote().ordinal()]++;
         }
+    }
 
-        for (int i = 51; i < 60; i++) {
-            if (i % 5 == 0) {
-                //already done in the loop above
-                continue;
-            }
-            new Results(new Setup.StubbornMinority(i, 400.0, 150.0, -600.0, 100.0,
-                    1.0, 0.1)).runToFile("stub-minor-" + i, "stubMin");
+    /**
+     * Runs all sweeps. With a checkpoint directory as argument, for example "checkpoints", a
+     * killed run continues where it stopped when started again with the same directory.
+     */
+    public static void main(String[] args) {
+        SweepEngine sweeps = new SweepEngine();
+        if (args.length > 0) {
+            sweeps.setCheckpointDir(new File(args[0]));
         }
 
-        for (int i = 0; i <= 75; i++) {
-            new Results(new Setup.StubbornMinority(i, 400.0, 200.0, -400.0, 200.0,
-                    1.0, 1.0)).runToFile("against-" + i, "tweedeKamer4");
-        }
-        new Results(new Setup.TweedeKamerSetup(Setup.zondag)).runToFile("zondag", "tweedeKamer");
-        new Results(new Setup.TweedeKamerSetup(Setup.roken)).runToFile("roken", "tweedeKamer");
+        sweeps.add(new Sweep("proving")
+                .addBoth("consistency", Setup.getDefaultConsistency())
+                .gridBoth("normal-disted-opinion-", IntStream.range(0, 10),
+                        i -> Setup.getDefault()));
+
+        sweeps.add(new Sweep("rootN")
+                .grid("root-n--accepting-", IntStream.range(1, 25), Scenarios::rootNAccepting)
+                .grid("root-n--normStubb-", IntStream.range(1, 25),
+                        Scenarios::rootNNormalStubborn));
+
+        sweeps.add(new Sweep("stubMin")
+                .commonRandomNumbers()
+                .grid("stub-minor-", IntStream.iterate(5, i -> i <= 75, i -> i + 5),
+                        Scenarios::stubbornMinority)
+                //multiples of 5 are already in the grid above
+                .grid("stub-minor-", IntStream.range(51, 60).filter(i -> i % 5 != 0),
+                        Scenarios::stubbornMinority));
+
+        sweeps.add(new Sweep("tweedeKamer4")
+                .commonRandomNumbers()
+                .grid("against-", IntStream.rangeClosed(0, 75), Scenarios::against));
+
+        sweeps.add(new Sweep("tweedeKamer")
+                .add("zondag", new Setup.TweedeKamerSetup(Setup.zondag))
+                .add("roken", new Setup.TweedeKamerSetup(Setup.roken)));
+
+        sweeps.run();
     }
 }
@@ -33,15 +33,24 @@ public class MP {
     }
 
     private void checkOpinionBounds() {
+        opinion = checkOpinionBounds(opinion);
+    }
+
+    static int checkOpinionBounds(int opinion) {
         if (opinion > OPINION_MAX) {
-            this.opinion = OPINION_MAX;
+            return OPINION_MAX;
         } else if (opinion < -OPINION_MAX) {
-            this.opinion = -OPINION_MAX;
+            return -OPINION_MAX;
         }
+        return opinion;
     }
 
     public VoteOptions vote() {
-        if (getAbsoluteOpinion() <= NEUTRAL_MAX) {
+        return vote(opinion);
+    }
+
+    static VoteOptions vote(int opinion) {
+        if (Math.abs(opinion) <= NEUTRAL_MAX) {
             return VoteOptions.NEUTRAL;
         }
         if (opinion > 0) {
@@ -51,27 +60,47 @@ public class MP {
     }
 
     public void listen(int speech) {
-        int absoluteOpinion = getAbsoluteOpinion();
+        opinion = listen(opinion, stubbornness, speech);
+    }
+
+    /**
+     * Returns the opinion of an MP with the given opinion and stubbornness after hearing the
+     * speech, shared with the array based chambers so they follow exactly the same rules.
+     */
+    static int listen(int opinion, double stubbornness, int speech) {
+        int absoluteOpinion = Math.abs(opinion);
         int influence = (int) (stubbornness * 2  * speech * (OPINION_MAX - absoluteOpinion) /
                         (2*absoluteOpinion + OPINION_MAX));
-        opinion += influence;
-        checkOpinionBounds();
+        return checkOpinionBounds(opinion + influence);
     }
 
-    private int getAbsoluteOpinion() {
-        return Math.abs(opinion);
+    public int speak() {
+        return speak(opinion, speechSkill);
     }
 
-    public int speak() {
-        if (getAbsoluteOpinion() > OPINION_MAX / 2) {
-            return (int) (getAbsoluteOpinion() / 5 * speechSkill);
+    static int speak(int opinion, double speechSkill) {
+        int absoluteOpinion = Math.abs(opinion);
+        if (absoluteOpinion > OPINION_MAX / 2) {
+            return (int) (absoluteOpinion / 5 * speechSkill);
         } else {
-            return getAbsoluteOpinion() / 5 * (int)(calcSpeechMod() * speechSkill);
+            return absoluteOpinion / 5 * (int)(calcSpeechMod(absoluteOpinion) * speechSkill);
         }
     }
 
-    private double calcSpeechMod() {
-        double v = (getAbsoluteOpinion()) / 750.0;
+    private static double calcSpeechMod(int absoluteOpinion) {
+        double v = absoluteOpinion / 750.0;
         return 27.0/4.0 * (v * v * ( 1- v));
     }
+
+    public int getOpinion() {
+        return opinion;
+    }
+
+    public double getSpeechSkill() {
+        return speechSkill;
+    }
+
+    public double getStubbornness() {
+        return stubbornness;
+    }
 }
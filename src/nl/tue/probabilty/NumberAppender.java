@@ -0,0 +1,104 @@
+package nl.tue.probabilty;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Appends numbers to a StringBuilder without going through String.format for every cell. The
+ * results are the same as "%{width}.2f" and "%{width}d" in the given locale. Only locales that
+ * write '.' and the digits 0 to 9 take the fast path, values in other locales and values that are
+ * too close to a rounding tie to decide cheaply are still handed to String.format.
+ */
+final class NumberAppender {
+
+    private static final double FAST_LIMIT = 1e9;
+    private static final double TIE_MARGIN = 1e-6;
+
+    private static final Map<Locale, Boolean> PLAIN_LOCALES = new ConcurrentHashMap<>();
+
+    private NumberAppender() {
+    }
+
+    /**
+     * Appends the value with two decimals in the locale, left padded with spaces to the width.
+     */
+    static void appendFixed(StringBuilder builder, double value, int width, Locale locale) {
+        double scaled = Math.abs(value) * 100;
+        if (!(scaled < FAST_LIMIT) || !isPlain(locale)) {
+            builder.append(formatSlow(locale, value, width));
+            return;
+        }
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < TIE_MARGIN) {
+            //String.format rounds the shortest decimal representation half up, let it decide
+            builder.append(formatSlow(locale, value, width));
+            return;
+        }
+        long cents = (long) floor + (fraction > 0.5 ? 1 : 0);
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        long whole = cents / 100;
+        int decimals = (int) (cents % 100);
+
+        int length = digits(whole) + 3 + (negative ? 1 : 0);
+        for (int i = length; i < width; i++) {
+            builder.append(' ');
+        }
+        if (negative) {
+            builder.append('-');
+        }
+        builder.append(whole).append('.');
+        builder.append((char) ('0' + decimals / 10)).append((char) ('0' + decimals % 10));
+    }
+
+    /**
+     * Appends the value as "%{width}.3e" in the locale, for values that can be too small to show
+     * two decimals.
+     */
+    static void appendScientific(StringBuilder builder, double value, int width, Locale locale) {
+        builder.append(String.format(locale, width > 0 ? "%" + width + ".3e" : "%.3e", value));
+    }
+
+    private static String formatSlow(Locale locale, double value, int width) {
+        return String.format(locale, width > 0 ? "%" + width + ".2f" : "%.2f", value);
+    }
+
+    /**
+     * Whether the locale writes numbers with a '.' and the digits 0 to 9, like the fast paths.
+     */
+    private static boolean isPlain(Locale locale) {
+        if (locale == Locale.ROOT) {
+            return true;
+        }
+        return PLAIN_LOCALES.computeIfAbsent(locale, l -> {
+            DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(l);
+            return symbols.getDecimalSeparator() == '.' && symbols.getZeroDigit() == '0';
+        });
+    }
+
+    /**
+     * Appends the value in the locale, left padded with spaces to the width.
+     */
+    static void appendPadded(StringBuilder builder, long value, int width, Locale locale) {
+        if (!isPlain(locale)) {
+            builder.append(String.format(locale, width > 0 ? "%" + width + "d" : "%d", value));
+            return;
+        }
+        int length = value < 0 ? digits(-value) + 1 : digits(value);
+        for (int i = length; i < width; i++) {
+            builder.append(' ');
+        }
+        builder.append(value);
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,413 @@
+package nl.tue.probabilty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * Estimates win probabilities that are far too small for plain runs, like a small stubborn
+ * minority flipping the final vote, with importance sampling. The opinions are drawn from tilted
+ * distributions under which the target option wins often, and every run is weighted by its
+ * likelihood ratio. The tilt is fitted with the cross entropy method: pilot runs are ranked by
+ * how close the target option is to winning the final vote, and the tilt moves towards the best
+ * of them until the target option itself wins in enough pilot runs. Runs with the same final
+ * votes are ranked by their mean initial opinion, as most runs of a rare event end with exactly
+ * the same votes.
+ * <p>
+ * Once the MPs are generated the debate is deterministic, so all chance lies in the generated
+ * opinions and splitting runs over the rounds of the debate would not add anything.
+ *
+ * <pre>
+ * &lt;scenario&gt; &lt;seed&gt; &lt;PRO|AGAINST&gt; &lt;target&gt; &lt;runs&gt; [threads]
+ * </pre>
+ */
+public class RareEventEstimator {
+
+    private static final int BLOCK_SIZE = 256;
+
+    private final Results results;
+    private final VoteOptions target;
+    private int pilotRuns = 2000;
+    private double eliteFraction = 0.1;
+    private int maxIterations = 20;
+    private int parallelism = 1;
+    private double defensiveFraction = 0.1;
+    //runs of different pilots and estimates never share their random numbers
+    private int nextRun;
+
+    /**
+     * @param results the setup, start side, rounds and engine of the runs
+     * @param target  the option whose wins are rare
+     */
+    public RareEventEstimator(Results results, VoteOptions target) {
+        this.results = results;
+        this.target = target;
+    }
+
+    /**
+     * Sets the number of threads used to execute the runs, 1 (the default) runs everything on
+     * the calling thread.
+     */
+    public void setParallelism(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Must use at least one thread");
+        }
+        this.parallelism = threads;
+    }
+
+    /**
+     * Sets the runs of every step of the cross entropy method and the fraction of them the tilt
+     * is fitted to.
+     */
+    public void setPilot(int runs, double eliteFraction, int maxIterations) {
+        if (runs <= 0 || !(eliteFraction > 0 && eliteFraction < 1) || maxIterations <= 0) {
+            throw new IllegalArgumentException("Invalid pilot of " + runs + " runs, elite " +
+                    eliteFraction + " and " + maxIterations + " iterations");
+        }
+        this.pilotRuns = runs;
+        this.eliteFraction = eliteFraction;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Sets the fraction of the estimating runs that draws from the setup instead of the tilt,
+     * see {@link ImportanceSampling}. 0 draws every run from the tilt.
+     */
+    public void setDefensiveFraction(double fraction) {
+        if (!(fraction >= 0 && fraction < 1)) {
+            throw new IllegalArgumentException("Fraction must be in [0, 1), got " + fraction);
+        }
+        this.defensiveFraction = fraction;
+    }
+
+    /**
+     * How close the target option is to winning the votes, it wins when the score is at least
+     * {@link #winningScore()}. The mean opinion, relative to the maximum opinion, only changes
+     * the score by less than a single vote.
+     */
+    private double score(int[] votes, double meanOpinion) {
+        int margin = votes[VoteOptions.PRO.ordinal()] - votes[VoteOptions.AGAINST.ordinal()];
+        switch (target) {
+            case PRO:
+                return margin + meanOpinion / 4;
+            case AGAINST:
+                return -margin - meanOpinion / 4;
+        }
+        return -Math.abs(margin) - Math.abs(meanOpinion) / 4;
+    }
+
+    private double winningScore() {
+        return target == VoteOptions.NEUTRAL ? -0.5 : 0.5;
+    }
+
+    /**
+     * Fits the tilt with the cross entropy method. Every step the tilt is fitted to the pilot
+     * runs that score at least as well as the best elite fraction of them, or to the runs the
+     * target option wins once that is more than the elite fraction.
+     */
+    public ImportanceSampling fitTilt() {
+        ImportanceSampling tilt = new ImportanceSampling();
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            Sample[] samples = sample(tilt, pilotRuns);
+            double[] scores = new double[samples.length];
+            for (int i = 0; i < samples.length; i++) {
+                scores[i] = samples[i].score;
+            }
+            Arrays.sort(scores);
+            double level = Math.min(winningScore(),
+                    scores[(int) ((1 - eliteFraction) * (scores.length - 1))]);
+
+            ImportanceSampling.Fit fit = new ImportanceSampling.Fit();
+            for (Sample sample : samples) {
+                if (sample.score >= level) {
+                    fit.add(sample.draws, sample.draws.getWeight());
+                }
+            }
+            tilt = fit.result();
+            if (level == winningScore()) {
+                break;
+            }
+        }
+        return tilt;
+    }
+
+    /**
+     * Fits a tilt and estimates the win probabilities with the given number of tilted runs.
+     */
+    public Estimate estimate(int runs) {
+        return estimate(fitTilt(), runs);
+    }
+
+    /**
+     * Estimates the win probabilities with the given number of runs, of which the defensive
+     * fraction draws from the setup itself and the others from the tilt.
+     */
+    public Estimate estimate(ImportanceSampling tilt, int runs) {
+        int from = reserve(runs);
+        int measurePoints = results.getMeasurePoints();
+        long seed = results.getSetup().getSeed();
+        List<Estimate> blocks = execute(tilt, blocks(runs), block -> {
+            Estimate estimate = new Estimate(measurePoints, tilt);
+            int[][] votes = new int[measurePoints][Results.DATA_PER_ROUND];
+            int start = from + block * BLOCK_SIZE;
+            for (int run = start; run < Math.min(from + runs, start + BLOCK_SIZE); run++) {
+                boolean tilted = defensiveFraction == 0 || new SplittableRandom(
+                        Setup.runSeed(~seed, run)).nextDouble() >= defensiveFraction;
+                ImportanceSampling.Draws draws = simulate(tilt, run, tilted, votes).draws;
+                estimate.addRun(votes, draws.getWeight(defensiveFraction));
+            }
+            return estimate;
+        });
+        Estimate estimate = new Estimate(measurePoints, tilt);
+        for (Estimate block : blocks) {
+            estimate.merge(block);
+        }
+        return estimate;
+    }
+
+    private static class Sample {
+        private final ImportanceSampling.Draws draws;
+        private final double meanOpinion;
+        private double score;
+
+        private Sample(ImportanceSampling.Draws draws, double meanOpinion) {
+            this.draws = draws;
+            this.meanOpinion = meanOpinion;
+        }
+    }
+
+    private Sample[] sample(ImportanceSampling tilt, int runs) {
+        int from = reserve(runs);
+        int last = results.getMeasurePoints() - 1;
+        List<Sample[]> blocks = execute(tilt, blocks(runs), block -> {
+            int start = from + block * BLOCK_SIZE;
+            Sample[] samples = new Sample[Math.min(from + runs, start + BLOCK_SIZE) - start];
+            int[][] votes = new int[results.getMeasurePoints()][Results.DATA_PER_ROUND];
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = simulate(tilt, start + i, true, votes);
+                samples[i].score = score(votes[last], samples[i].meanOpinion);
+            }
+            return samples;
+        });
+        Sample[] samples = new Sample[runs];
+        int offset = 0;
+        for (Sample[] block : blocks) {
+            System.arraycopy(block, 0, samples, offset, block.length);
+            offset += block.length;
+        }
+        return samples;
+    }
+
+    private Sample simulate(ImportanceSampling tilt, int run, boolean tilted, int[][] votes) {
+        ImportanceSampling.Draws draws = tilt.start(tilted);
+        MP[] mps = results.getSetup().generateMPs(run);
+        //before the debate, some engines change the opinions of the MPs themselves
+        long opinions = 0;
+        for (MP mp : mps) {
+            opinions += mp.getOpinion();
+        }
+        results.simulate(mps, votes);
+        return new Sample(draws, opinions / ((double) mps.length * MP.OPINION_MAX));
+    }
+
+    private int reserve(int runs) {
+        if (runs <= 0 || nextRun > Integer.MAX_VALUE - runs) {
+            throw new IllegalArgumentException("Can not do " + runs + " more runs after " +
+                    nextRun);
+        }
+        int from = nextRun;
+        nextRun += runs;
+        return from;
+    }
+
+    private static int blocks(int runs) {
+        return (runs + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Runs every block with the tilt set on the setup and returns their results in order.
+     */
+    private <T> List<T> execute(ImportanceSampling tilt, int blocks, IntFunction<T> block) {
+        Setup setup = results.getSetup();
+        if (setup.getSampling() != SamplingStrategy.PSEUDO_RANDOM) {
+            throw new IllegalStateException("Importance sampling needs independent runs, not " +
+                    setup.getSampling());
+        }
+        List<T> done = new ArrayList<>(blocks);
+        setup.setImportanceSampling(tilt);
+        ForkJoinPool pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        try {
+            if (pool == null) {
+                for (int i = 0; i < blocks; i++) {
+                    done.add(block.apply(i));
+                }
+                return done;
+            }
+            List<Callable<T>> tasks = new ArrayList<>(blocks);
+            for (int i = 0; i < blocks; i++) {
+                int index = i;
+                tasks.add(() -> block.apply(index));
+            }
+            for (Future<T> future : pool.invokeAll(tasks)) {
+                done.add(future.get());
+            }
+            return done;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Run failed", e.getCause());
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            setup.setImportanceSampling(null);
+        }
+    }
+
+    /**
+     * The weighted win probabilities of tilted runs. Every probability is the mean of the
+     * weight times whether the option won, its error is the standard error of that mean. All
+     * probabilities are unbiased, but the tilt is only fitted to the target option winning the
+     * final vote, the others can be far less precise than with plain runs.
+     */
+    public static class Estimate {
+
+        private final int measurePoints;
+        private final ImportanceSampling tilt;
+        private final double[][] weightedWins;
+        private final double[][] squaredWeightedWins;
+        private double weights;
+        private double squaredWeights;
+        private long runs;
+
+        private Estimate(int measurePoints, ImportanceSampling tilt) {
+            this.measurePoints = measurePoints;
+            this.tilt = tilt;
+            weightedWins = new double[Results.DATA_PER_ROUND][measurePoints];
+            squaredWeightedWins = new double[Results.DATA_PER_ROUND][measurePoints];
+        }
+
+        private void addRun(int[][] votes, double weight) {
+            for (int i = 0; i < measurePoints; i++) {
+                int winner = Results.RoundResult.totalVote(votes[i]).ordinal();
+                weightedWins[winner][i] += weight;
+                squaredWeightedWins[winner][i] += weight * weight;
+            }
+            weights += weight;
+            squaredWeights += weight * weight;
+            runs++;
+        }
+
+        private void merge(Estimate other) {
+            for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                for (int i = 0; i < measurePoints; i++) {
+                    weightedWins[j][i] += other.weightedWins[j][i];
+                    squaredWeightedWins[j][i] += other.squaredWeightedWins[j][i];
+                }
+            }
+            weights += other.weights;
+            squaredWeights += other.squaredWeights;
+            runs += other.runs;
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        public ImportanceSampling getTilt() {
+            return tilt;
+        }
+
+        public double getProbability(int measurePoint, VoteOptions option) {
+            return runs == 0 ? 0 : weightedWins[option.ordinal()][measurePoint] / runs;
+        }
+
+        public double getError(int measurePoint, VoteOptions option) {
+            if (runs < 2) {
+                return 0;
+            }
+            double mean = getProbability(measurePoint, option);
+            double variance = (squaredWeightedWins[option.ordinal()][measurePoint] -
+                    runs * mean * mean) / (runs - 1);
+            return Math.sqrt(Math.max(0, variance) / runs);
+        }
+
+        /**
+         * The number of plain runs the weighted runs are worth, far below the number of runs
+         * when a few weights dominate and the tilt does not fit.
+         */
+        public double getEffectiveRuns() {
+            return squaredWeights == 0 ? 0 : weights * weights / squaredWeights;
+        }
+
+        /**
+         * The mean weight, which should be close to 1 for a tilt that covers every outcome.
+         */
+        public double getMeanWeight() {
+            return runs == 0 ? 0 : weights / runs;
+        }
+
+        /**
+         * Formats the estimate in the same semicolon separated layout as the other results.
+         */
+        public String format() {
+            Locale locale = ReportFormat.SEMICOLON.getLocale();
+            StringBuilder builder = new StringBuilder();
+            builder.append("Weighted runs;").append(runs).append("\n");
+            builder.append("Effective runs;");
+            NumberAppender.appendFixed(builder, getEffectiveRuns(), 0, locale);
+            builder.append("\nMean weight;");
+            NumberAppender.appendScientific(builder, getMeanWeight(), 0, locale);
+            builder.append("\n").append(tilt.format()).append("\n");
+
+            builder.append("\n% WINS\n");
+            rows(builder, false, locale);
+            builder.append("\n% WINS error\n");
+            rows(builder, true, locale);
+            return builder.toString();
+        }
+
+        private void rows(StringBuilder builder, boolean errors, Locale locale) {
+            for (VoteOptions option : VoteOptions.values()) {
+                builder.append(option.getName()).append(":");
+                for (int i = 0; i < measurePoints; i++) {
+                    builder.append(";");
+                    NumberAppender.appendScientific(builder, errors ? getError(i, option) :
+                            getProbability(i, option), 10, locale);
+                }
+                builder.append("\n");
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.out.println("Usage: <scenario> <seed> <PRO|AGAINST> <target> <runs> [threads]");
+            return;
+        }
+        Setup setup = Scenarios.create(args[0]);
+        setup.setSeed(Long.parseLong(args[1]));
+        Results results = new Results(1, setup, VoteOptions.valueOf(args[2]));
+        results.setEngine(ChamberEngine.ARRAY);
+        RareEventEstimator estimator = new RareEventEstimator(results,
+                VoteOptions.valueOf(args[3]));
+        estimator.setParallelism(args.length > 5 ? Integer.parseInt(args[5]) :
+                Runtime.getRuntime().availableProcessors());
+
+        long start = System.nanoTime();
+        ImportanceSampling tilt = estimator.fitTilt();
+        long fitted = System.nanoTime();
+        System.out.println("Fitted tilt in " + (fitted - start) / 1_000_000 + " ms");
+        Estimate estimate = estimator.estimate(tilt, Integer.parseInt(args[4]));
+        System.out.println("Estimated in " + (System.nanoTime() - fitted) / 1_000_000 + " ms");
+        System.out.print(estimate.format());
+    }
+}
@@ -0,0 +1,130 @@
+package nl.tue.probabilty;
+
+/**
+ * The numbers that are reported for a batch of runs, per vote option and measure point.
+ */
+public class Report {
+
+    private final long runs;
+    private final int measurePoints;
+
+    private final double[][] means;
+    private final double[][] medians;
+    private final double[][] mins;
+    private final double[][] maxs;
+    private final double[][] q1s;
+    private final double[][] q3s;
+    private final long[][] wins;
+    private final double[][] winPercentages;
+    private final double[][] winErrors;
+
+    public Report(RunStatistics statistics) {
+        runs = statistics.getRuns();
+        measurePoints = statistics.getMeasurePoints();
+        int options = Results.DATA_PER_ROUND;
+
+        medians = new double[options][measurePoints];
+        q1s = new double[options][measurePoints];
+        q3s = new double[options][measurePoints];
+
+        means = new double[options][measurePoints];
+        mins = new double[options][measurePoints];
+        maxs = new double[options][measurePoints];
+
+        wins = new long[options][measurePoints];
+        winPercentages = new double[options][measurePoints];
+        winErrors = statistics.hasReplicates() ? new double[options][measurePoints] : null;
+
+        for (int i = 0; i < measurePoints; i++) {
+
+            for (int j = 0; j < options; j++) {
+                VoteOptions option = VoteOptions.values()[j];
+                wins[j][i] = statistics.getWins(i, option);
+                if (winErrors != null) {
+                    winErrors[j][i] = statistics.getWinError(i, option);
+                }
+
+                CountHistogram values = statistics.getVotes(i, option);
+
+                double median;
+                double q1;
+                double q3;
+
+                long vSize = values.getCount();
+                long hSize = vSize / 2;
+                long qSize = vSize / 4;
+                if (vSize % 2 == 0) {
+                    //even size pick average of two middle elements
+                    median = (values.get(hSize) + values.get(hSize + 1)) / 2.0;
+                    q1 = (values.get(qSize) + values.get(qSize - 1)) / 2.0;
+                    q3 = (values.get(vSize - qSize) + values.get(vSize - qSize - 1)) / 2.0;
+                } else {
+                    //uneven size just pick the middle one
+                    median = values.get(hSize);
+                    q1 = (values.get(qSize) + values.get(qSize - 1)) / 2.0;
+                    q3 = (values.get(vSize - qSize) + values.get(vSize - qSize - 1)) / 2.0;
+                }
+                medians[j][i] = median;
+                q1s[j][i] = q1;
+                q3s[j][i] = q3;
+
+                means[j][i] = values.getMean();
+                maxs[j][i] = values.getMax();
+                mins[j][i] = values.getMin();
+            }
+        }
+
+        for (int i = 0; i < wins.length; i++) {
+            for (int j = 0; j < wins[i].length; j++) {
+                winPercentages[i][j] = wins[i][j] / (double) runs;
+            }
+        }
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public int getMeasurePoints() {
+        return measurePoints;
+    }
+
+    public double[][] getMeans() {
+        return means;
+    }
+
+    public double[][] getMedians() {
+        return medians;
+    }
+
+    public double[][] getMins() {
+        return mins;
+    }
+
+    public double[][] getMaxs() {
+        return maxs;
+    }
+
+    public double[][] getQ1s() {
+        return q1s;
+    }
+
+    public double[][] getQ3s() {
+        return q3s;
+    }
+
+    public long[][] getWins() {
+        return wins;
+    }
+
+    public double[][] getWinPercentages() {
+        return winPercentages;
+    }
+
+    /**
+     * The standard errors of the win percentages, or null if the runs had no replicates.
+     */
+    public double[][] getWinErrors() {
+        return winErrors;
+    }
+}
@@ -0,0 +1,222 @@
+package nl.tue.probabilty;
+
+import java.util.Locale;
+
+/**
+ * The formats a {@link Report} can be written in.
+ */
+public enum ReportFormat {
+    /**
+     * The original layout, every section is a block of semicolon separated rows. The numbers are
+     * written in the default locale, so spreadsheets that use a decimal comma read them.
+     */
+    SEMICOLON,
+    /**
+     * One comma separated row per section and vote option, with a header row.
+     */
+    CSV,
+    JSON;
+
+    public String getExtension() {
+        switch (this) {
+            case CSV:
+                return ".csv";
+            case JSON:
+                return ".json";
+        }
+        return ".txt";
+    }
+
+    public String format(Report report) {
+        StringBuilder builder = new StringBuilder(estimateSize(report));
+        format(report, builder);
+        return builder.toString();
+    }
+
+    public void format(Report report, StringBuilder builder) {
+        switch (this) {
+            case SEMICOLON:
+                formatSemicolon(report, builder);
+                break;
+            case CSV:
+                formatCSV(report, builder);
+                break;
+            case JSON:
+                formatJSON(report, builder);
+                break;
+        }
+    }
+
+    /**
+     * The locale the numbers are written in, CSV and JSON always write a '.'.
+     */
+    public Locale getLocale() {
+        return this == SEMICOLON ? Locale.getDefault(Locale.Category.FORMAT) : Locale.ROOT;
+    }
+
+    private static int estimateSize(Report report) {
+        return 8 * Results.DATA_PER_ROUND * report.getMeasurePoints() * 12 + 256;
+    }
+
+    private static void formatSemicolon(Report report, StringBuilder builder) {
+        Locale locale = SEMICOLON.getLocale();
+        builder.append("Means\n\n");
+        semicolonRows(report.getMeans(), locale, builder);
+
+        builder.append("\nMedians\n");
+        semicolonRows(report.getMedians(), locale, builder);
+
+        builder.append("\nMins\n");
+        semicolonRows(report.getMins(), locale, builder);
+
+        builder.append("\nMaxs\n");
+        semicolonRows(report.getMaxs(), locale, builder);
+
+        builder.append("\nQ1\n");
+        semicolonRows(report.getQ1s(), locale, builder);
+
+        builder.append("\nQ3\n");
+        semicolonRows(report.getQ3s(), locale, builder);
+
+        builder.append("\nWINS\n");
+        for (int vote = 0; vote < Results.DATA_PER_ROUND; vote++) {
+            builder.append(VoteOptions.values()[vote].getName()).append(":");
+            for (long value : report.getWins()[vote]) {
+                builder.append(";");
+                NumberAppender.appendPadded(builder, value, 6, locale);
+            }
+            builder.append("\n");
+        }
+
+        builder.append("\n% WINS\n");
+        semicolonRows(report.getWinPercentages(), locale, builder);
+
+        if (report.getWinErrors() != null) {
+            builder.append("\n% WINS error\n");
+            semicolonRows(report.getWinErrors(), true, locale, builder);
+        }
+    }
+
+    private static void semicolonRows(double[][] values, Locale locale, StringBuilder builder) {
+        semicolonRows(values, false, locale, builder);
+    }
+
+    private static void semicolonRows(double[][] values, boolean scientific, Locale locale,
+                                      StringBuilder builder) {
+        for (int vote = 0; vote < Results.DATA_PER_ROUND; vote++) {
+            builder.append(VoteOptions.values()[vote].getName()).append(":");
+            for (double value : values[vote]) {
+                builder.append(";");
+                appendValue(builder, value, 10, scientific, locale);
+            }
+            builder.append("\n");
+        }
+    }
+
+    private static void formatCSV(Report report, StringBuilder builder) {
+        builder.append("section,option");
+        for (int i = 0; i < report.getMeasurePoints(); i++) {
+            builder.append(",round").append(i);
+        }
+        builder.append("\n");
+        csvRows("means", report.getMeans(), builder);
+        csvRows("medians", report.getMedians(), builder);
+        csvRows("mins", report.getMins(), builder);
+        csvRows("maxs", report.getMaxs(), builder);
+        csvRows("q1", report.getQ1s(), builder);
+        csvRows("q3", report.getQ3s(), builder);
+        for (int vote = 0; vote < Results.DATA_PER_ROUND; vote++) {
+            builder.append("wins,").append(VoteOptions.values()[vote].name());
+            for (long value : report.getWins()[vote]) {
+                builder.append(',').append(value);
+            }
+            builder.append("\n");
+        }
+        csvRows("win_fraction", report.getWinPercentages(), builder);
+        if (report.getWinErrors() != null) {
+            csvRows("win_fraction_error", report.getWinErrors(), true, builder);
+        }
+    }
+
+    private static void csvRows(String section, double[][] values, StringBuilder builder) {
+        csvRows(section, values, false, builder);
+    }
+
+    private static void csvRows(String section, double[][] values, boolean scientific,
+                                StringBuilder builder) {
+        for (int vote = 0; vote < Results.DATA_PER_ROUND; vote++) {
+            builder.append(section).append(',').append(VoteOptions.values()[vote].name());
+            for (double value : values[vote]) {
+                builder.append(',');
+                appendValue(builder, value, 0, scientific, Locale.ROOT);
+            }
+            builder.append("\n");
+        }
+    }
+
+    private static void formatJSON(Report report, StringBuilder builder) {
+        builder.append("{\n  \"runs\": ").append(report.getRuns());
+        builder.append(",\n  \"measurePoints\": ").append(report.getMeasurePoints());
+        jsonSection("means", report.getMeans(), builder);
+        jsonSection("medians", report.getMedians(), builder);
+        jsonSection("mins", report.getMins(), builder);
+        jsonSection("maxs", report.getMaxs(), builder);
+        jsonSection("q1", report.getQ1s(), builder);
+        jsonSection("q3", report.getQ3s(), builder);
+
+        builder.append(",\n  \"wins\": {");
+        for (int vote = 0; vote < Results.DATA_PER_ROUND; vote++) {
+            builder.append(vote == 0 ? "\n" : ",\n");
+            builder.append("    \"").append(VoteOptions.values()[vote].name()).append("\": [");
+            long[] values = report.getWins()[vote];
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(values[i]);
+            }
+            builder.append(']');
+        }
+        builder.append("\n  }");
+
+        jsonSection("winFraction", report.getWinPercentages(), builder);
+        if (report.getWinErrors() != null) {
+            jsonSection("winFractionError", report.getWinErrors(), true, builder);
+        }
+        builder.append("\n}\n");
+    }
+
+    private static void jsonSection(String section, double[][] values, StringBuilder builder) {
+        jsonSection(section, values, false, builder);
+    }
+
+    private static void jsonSection(String section, double[][] values, boolean scientific,
+                                    StringBuilder builder) {
+        builder.append(",\n  \"").append(section).append("\": {");
+        for (int vote = 0; vote < Results.DATA_PER_ROUND; vote++) {
+            builder.append(vote == 0 ? "\n" : ",\n");
+            builder.append("    \"").append(VoteOptions.values()[vote].name()).append("\": [");
+            for (int i = 0; i < values[vote].length; i++) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                appendValue(builder, values[vote][i], 0, scientific, Locale.ROOT);
+            }
+            builder.append(']');
+        }
+        builder.append("\n  }");
+    }
+
+    /**
+     * Errors of the win fractions are too small for two decimals, they are written in
+     * scientific notation instead.
+     */
+    private static void appendValue(StringBuilder builder, double value, int width,
+                                    boolean scientific, Locale locale) {
+        if (scientific) {
+            NumberAppender.appendScientific(builder, value, width, locale);
+        } else {
+            NumberAppender.appendFixed(builder, value, width, locale);
+        }
+    }
+}
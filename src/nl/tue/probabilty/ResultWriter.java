@@ -0,0 +1,136 @@
+package nl.tue.probabilty;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats and writes reports on its own thread, so the threads running the simulation only hand
+ * over their statistics. The queue is bounded, when the writer can not keep up submitting blocks
+ * until there is room again.
+ * <p>
+ * A report that fails to be formatted or written is reported and skipped, the reports after it
+ * are still written.
+ */
+public class ResultWriter implements Closeable {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final long CHECK_ALIVE_MILLIS = 100;
+
+    private static final Job STOP = new Job(null, null, null, null);
+
+    private static class Job {
+        private final RunStatistics statistics;
+        private final File file;
+        private final ReportFormat format;
+        private final Runnable onWritten;
+
+        private Job(RunStatistics statistics, File file, ReportFormat format,
+                    Runnable onWritten) {
+            this.statistics = statistics;
+            this.file = file;
+            this.format = format;
+            this.onWritten = onWritten;
+        }
+    }
+
+    private final BlockingQueue<Job> queue;
+    private final Thread thread;
+    private final StringBuilder builder = new StringBuilder(4096);
+
+    public ResultWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ResultWriter(int capacity) {
+        queue = new ArrayBlockingQueue<>(capacity);
+        thread = new Thread(this::writeLoop, "result-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues the statistics to be written to the file, waiting while the queue is full.
+     *
+     * @param onWritten called on the writer thread after the file was written, may be null
+     */
+    public void submit(RunStatistics statistics, File file, ReportFormat format,
+                       Runnable onWritten) {
+        put(new Job(statistics, file, format, onWritten));
+    }
+
+    private void put(Job job) {
+        if (!offer(job)) {
+            throw new IllegalStateException("The writer thread stopped, can not write " + job.file);
+        }
+    }
+
+    /**
+     * Waits until the job is queued, returns false if the writer thread stopped before that.
+     */
+    private boolean offer(Job job) {
+        try {
+            while (!queue.offer(job, CHECK_ALIVE_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!thread.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing " + job.file, e);
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (job == STOP) {
+                return;
+            }
+            try {
+                write(job);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Could not write " + job.file);
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void write(Job job) throws IOException {
+        builder.setLength(0);
+        job.format.format(new Report(job.statistics), builder);
+        try (BufferedWriter writer = Files.newBufferedWriter(job.file.toPath())) {
+            writer.append(builder);
+        }
+        if (job.onWritten != null) {
+            job.onWritten.run();
+        }
+    }
+
+    /**
+     * Writes everything that is still queued and stops the writer thread. Returns right away
+     * when the writer thread already stopped.
+     */
+    @Override
+    public void close() {
+        try {
+            if (offer(STOP)) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -3,10 +3,13 @@ package nl.tue.probabilty;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.DoubleSummaryStatistics;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 public class Results {
 
@@ -17,8 +20,17 @@ public class Results {
 
     private final int runs;
     private final Setup setup;
-    private int[][][] data;
-    private VoteOptions[][] finalVotes;
+    private final VoteOptions startSide;
+    private final int measurePoints;
+    private int parallelism = 1;
+    private ChamberEngine engine = ChamberEngine.OBJECT;
+    private RunStatistics statistics;
+    private final ChamberMemo memo;
+    private final KernelTables tables = new KernelTables();
+    private StoppingRule stoppingRule;
+    private File trajectoryFile;
+    private TrajectoryStore.Writer trajectories;
+    private RunMetrics metrics = new RunMetrics(RunMetrics.process());
 
     public Results() {
         this(Setup.getDefault());
@@ -29,234 +41,494 @@ public class Results {
     }
 
     public Results(int runs, Setup setup) {
+        this(runs, setup, VoteOptions.PRO);
+    }
+
+    public Results(int runs, Setup setup, VoteOptions startSide) {
+        this(runs, setup, startSide, LowerChambers.SPEAKERS_PER_SIDE);
+    }
+
+    /**
+     * @param speakersPerSide the number of rounds in the debate, in every round one MP of each
+     *                        side speaks
+     */
+    public Results(int runs, Setup setup, VoteOptions startSide, int speakersPerSide) {
         if (runs <= 0) {
             throw new IllegalArgumentException("Must do at least one run");
         }
+        if (startSide == VoteOptions.NEUTRAL) {
+            throw new IllegalArgumentException("Neutral can not start the debate");
+        }
+        if (speakersPerSide < 0) {
+            throw new IllegalArgumentException("Can not have a negative amount of speakers");
+        }
         this.runs = runs;
         this.setup = setup;
-        createStorage();
-    }
-
-    private void createStorage() {
-        data = new int[runs][TOTAL_MEASURE_POINTS][DATA_PER_ROUND];
-        finalVotes = new VoteOptions[runs][TOTAL_MEASURE_POINTS];
+        this.startSide = startSide;
+        this.measurePoints = speakersPerSide + 1;
+        this.statistics = new RunStatistics(measurePoints);
+        this.memo = new ChamberMemo(setup.getSize());
     }
 
-    private void executeRun(int run) {
-        LowerChambers lc = new LowerChambers(setup, run);
+    void simulate(MP[] mps, int[][] votes) {
+        ChamberMemo.Key key = memo.key(mps);
+        if (key != null && memo.lookup(key, votes)) {
+            return;
+        }
+        Chamber chamber = engine.create(mps, startSide, tables);
         //get initial vote
-        RoundResult result = lc.getCurrentResult();
-        data[run][0] = result.getVotes();
-        finalVotes[run][0] = result.getTotalVote();
-        for (int i = 1; i < TOTAL_MEASURE_POINTS; i++) {
-            lc.runRound();
+        chamber.countVotes(votes[0]);
+        for (int i = 1; i < measurePoints; i++) {
+            chamber.runRound();
             //collect vote after each round of discussion
-            result = lc.getCurrentResult();
-            data[run][i] = result.getVotes();
-            finalVotes[run][i] = result.getTotalVote();
+            chamber.countVotes(votes[i]);
         }
+        if (key != null) {
+            memo.store(key, votes);
+        }
+    }
 
+    public void setEngine(ChamberEngine engine) {
+        this.engine = engine;
     }
 
-    public void runAll() {
-        for (int i = 0; i < runs; i++) {
-            executeRun(i);
-            if (i % 1000 == 0) {
-                System.out.println("Did " + i + " runs");
-            }
-        }
-        System.out.println("\n\n\n");
-        System.out.println(resultsToString());
+    /**
+     * Stops running as soon as the rule is satisfied instead of always doing all runs, the
+     * maximum of the rule then replaces the number of runs. Null turns this off again.
+     */
+    public void setStoppingRule(StoppingRule stoppingRule) {
+        this.stoppingRule = stoppingRule;
     }
 
-    public void runToFile(String name) {
-        runToFile(name, false);
+    private int runLimit() {
+        return stoppingRule == null ? runs : stoppingRule.getMaxRuns();
     }
 
-    public void runToFile(String name, String baseDir) {
-        runToFile(name, false, baseDir);
+    private boolean hasEnoughRuns() {
+        if (stoppingRule == null) {
+            return statistics.getRuns() >= runs;
+        }
+        return stoppingRule.isDone(statistics);
     }
 
-    public void runToFile(String name, boolean both) {
-        runToFile(name, both, ".");
+    /**
+     * Also saves the votes of every run in the given file, see {@link TrajectoryStore}. When
+     * both start sides are run the file name gets a -pro-starts or -against-starts suffix.
+     */
+    public void setTrajectoryFile(File trajectoryFile) {
+        this.trajectoryFile = trajectoryFile;
     }
 
-    public void runToFile(String name, boolean both, String baseDir) {
-        File dir = new File(baseDir);
-        if (!dir.exists()) {
-            if (!dir.mkdirs()) {
-                System.out.println("Could not create directory");
-            }
+    private void openTrajectories() {
+        if (trajectoryFile == null) {
+            return;
         }
-        if (!dir.isDirectory()) {
-            System.out.println(dir.getAbsolutePath());
-            dir = new File(".");
+        try {
+            trajectories = new TrajectoryStore.Writer(trajectoryFile, runLimit(), measurePoints,
+                    setup.getSize());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        int file = 0;
-        String fileName = "run-" + file + "-" + name;
-        while(new File(dir, fileName + (both ? "-pro-starts" : "") + ".txt").exists() && ++file <
-                100) {
-            fileName = "run-" +file + "-" + name;
+    private void closeTrajectories() {
+        if (trajectories == null) {
+            return;
         }
-
-        LowerChambers.setStartSide(VoteOptions.PRO);
-        for (int i = 0; i < runs; i++) {
-            executeRun(i);
+        try {
+            trajectories.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            trajectories = null;
         }
+    }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(new File(dir, fileName +
-                (both ? "-pro-starts" : "") + ".txt").toPath())) {
-            writer.write(resultsToString());
-        } catch(IOException e) {
-            e.printStackTrace();
+    private static File withSuffix(File file, String suffix) {
+        String name = file.getName();
+        int extension = name.lastIndexOf('.');
+        if (extension <= 0) {
+            return new File(file.getParentFile(), name + suffix);
         }
+        return new File(file.getParentFile(), name.substring(0, extension) + suffix +
+                name.substring(extension));
+    }
 
-        if (!both) {
-            System.out.println("Saved to " + fileName + ".txt");
-            // we only test one side
-            return;
+    /**
+     * Sets the number of threads used to execute the runs, 1 (the default) runs everything on
+     * the calling thread. Every part of the runs is collected in its own statistics which are
+     * merged afterwards, so the output is the same as with the sequential execution.
+     */
+    public void setParallelism(int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Must use at least one thread");
         }
+        this.parallelism = threads;
+    }
 
-        //empty data
-        createStorage();
-        LowerChambers.setStartSide(VoteOptions.AGAINST);
-        for (int i = 0; i < runs; i++) {
-            executeRun(i);
-        }
+    private void executeRuns(boolean report) {
+        executeRuns(parallelism, report, this);
+    }
 
-        try (BufferedWriter writer = Files.newBufferedWriter(new File(dir, fileName +
-                "-against-starts" + ".txt").toPath())) {
-            writer.write(resultsToString());
-        } catch(IOException e) {
-            e.printStackTrace();
+    public RunStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * The metrics of the runs since the last batch or range of runs was started.
+     */
+    public RunMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Executes all runs of the given results, sharing one pool when running in parallel so the
+     * batches do not have to wait for each other. Batches with a stopping rule are run in steps
+     * until the rule is satisfied.
+     */
+    private static void executeRuns(int parallelism, boolean report, Results... batches) {
+        List<Results> pending = new ArrayList<>();
+        for (Results batch : batches) {
+            batch.statistics = new RunStatistics(batch.measurePoints);
+            batch.metrics = new RunMetrics(RunMetrics.process());
+            pending.add(batch);
         }
+        execute(parallelism, batches, () -> {
+            pending.removeIf(Results::hasEnoughRuns);
+            RunRange[] tasks = new RunRange[pending.size()];
+            for (int i = 0; i < tasks.length; i++) {
+                Results batch = pending.get(i);
+                int from = (int) batch.statistics.getRuns();
+                int to = batch.stoppingRule == null ? batch.runs :
+                        batch.stoppingRule.nextStop(from, batch.setup.getSampling());
+                tasks[i] = batch.new RunRange(from, to, report);
+            }
+            return tasks;
+        });
+        for (Results batch : batches) {
+            if (report && batch.stoppingRule != null) {
+                System.out.println("Stopped after " + batch.statistics.getRuns() + " runs");
+            }
+            batch.commitBatchEvent();
+        }
+    }
 
+    /**
+     * Executes only the runs with an index in [from, to), the statistics of these runs can be
+     * merged with those of the other ranges, for example computed by other processes. The range
+     * must lie within the runs of this batch.
+     */
+    public RunStatistics runRange(int from, int to) {
+        if (from < 0 || to < from) {
+            throw new IllegalArgumentException("Invalid range of runs [" + from + ", " + to + ")");
+        }
+        if (to > runLimit()) {
+            throw new IllegalArgumentException("Range of runs [" + from + ", " + to +
+                    ") does not fit in the " + runLimit() + " runs of this batch");
+        }
+        statistics = new RunStatistics(measurePoints);
+        metrics = new RunMetrics(RunMetrics.process());
+        execute(parallelism, new Results[]{this}, () -> statistics.getRuns() == 0 && to > from ?
+                new RunRange[]{new RunRange(from, to, false)} : new RunRange[0]);
+        commitBatchEvent();
+        return statistics;
+    }
 
-        System.out.println("Saved to " + fileName + ".txt");
+    private void commitBatchEvent() {
+        RunEvents.Batch event = new RunEvents.Batch();
+        if (event.shouldCommit()) {
+            event.runs = metrics.getRuns();
+            event.runsPerSecond = metrics.getRunsPerSecond();
+            event.allocatedPerRun = (long) metrics.getAllocatedBytesPerRun();
+            event.commit();
+        }
     }
 
-    private String resultsToString() {
-        double[][] medians = new double[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
-        double[][] q1s = new double[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
-        double[][] q3s = new double[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
+    private interface TaskSource {
+        /**
+         * Returns the ranges to run next, none when everything is done.
+         */
+        RunRange[] next();
+    }
 
-        double[][] means = new double[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
-        double[][] mins = new double[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
-        double[][] maxs = new double[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
+    private static void execute(int parallelism, Results[] batches, TaskSource source) {
+        for (Results batch : batches) {
+            batch.openTrajectories();
+        }
+        ForkJoinPool pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        try {
+            while (true) {
+                RunRange[] tasks = source.next();
+                if (tasks.length == 0) {
+                    break;
+                }
+                if (pool == null) {
+                    for (RunRange task : tasks) {
+                        task.executeSequential();
+                    }
+                } else {
+                    pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            for (Results batch : batches) {
+                batch.closeTrajectories();
+            }
+        }
+    }
 
-        int[][] finalVotesCount = new int[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
-        double[][] finalPercentage = new double[DATA_PER_ROUND][TOTAL_MEASURE_POINTS];
+    private void executeRange(int from, int to, boolean report) {
+        RunStatistics rangeStatistics = collectRange(from, to, report);
+        long start = System.nanoTime();
+        synchronized (this) {
+            statistics.merge(rangeStatistics);
+        }
+        metrics.add(RunMetrics.Phase.STATISTICS, System.nanoTime() - start);
+    }
 
-        for (int i = 0; i < TOTAL_MEASURE_POINTS; i++) {
+    /**
+     * Executes the runs in [from, to) on the calling thread and returns their statistics
+     * without touching the statistics of this batch.
+     */
+    RunStatistics collectRange(int from, int to, boolean report) {
+        RunStatistics rangeStatistics = new RunStatistics(measurePoints);
+        int[][] votes = new int[measurePoints][DATA_PER_ROUND];
+        RunMetrics.Recorder recorder = metrics.recorder();
+        if (setup.isDeterministic() && to > from) {
+            //every run is the same, simulate one and count it for all of them
+            recorder.startRun();
+            MP[] mps = setup.generateMPs(from);
+            recorder.lap(RunMetrics.Phase.GENERATE);
+            simulate(mps, votes);
+            recorder.lap(RunMetrics.Phase.DEBATE);
+            rangeStatistics.addRun(votes, to - from);
+            recorder.lap(RunMetrics.Phase.STATISTICS);
+            for (int i = from; i < to; i++) {
+                writeTrajectory(i, votes);
+            }
+            recorder.lap(RunMetrics.Phase.OUTPUT);
+            recorder.endRun(to - from);
+            recorder.finish();
+            return rangeStatistics;
+        }
+        if (engine == ChamberEngine.BATCH) {
+            collectBatches(from, to, rangeStatistics, recorder);
+            recorder.finish();
+            return rangeStatistics;
+        }
+        for (int i = from; i < to; i++) {
+            recorder.startRun();
+            MP[] mps = setup.generateMPs(i);
+            recorder.lap(RunMetrics.Phase.GENERATE);
+            simulate(mps, votes);
+            recorder.lap(RunMetrics.Phase.DEBATE);
+            rangeStatistics.addRun(votes, 1, setup.getSampling().replicate(i));
+            recorder.lap(RunMetrics.Phase.STATISTICS);
+            writeTrajectory(i, votes);
+            recorder.lap(RunMetrics.Phase.OUTPUT);
+            recorder.endRun(1);
+            if (report && i % 1000 == 0) {
+                System.out.println("Did " + i + " runs");
+            }
+        }
+        recorder.finish();
+        return rangeStatistics;
+    }
 
-            for (int k = 0; k < runs; k++) {
-                //increment the winning vote option from run k in round i
-                finalVotesCount[finalVotes[k][i].ordinal()][i]++;
+    /**
+     * Runs [from, to) in lockstep batches, the statistics are the same as running them one by
+     * one.
+     */
+    private void collectBatches(int from, int to, RunStatistics rangeStatistics,
+                                RunMetrics.Recorder recorder) {
+        int[][][] votes = new int[BatchChamber.DEFAULT_BATCH_SIZE][measurePoints][DATA_PER_ROUND];
+        int[][] roundVotes = new int[BatchChamber.DEFAULT_BATCH_SIZE][];
+        for (int start = from; start < to; start += BatchChamber.DEFAULT_BATCH_SIZE) {
+            int count = Math.min(BatchChamber.DEFAULT_BATCH_SIZE, to - start);
+            recorder.startRun();
+            MP[][] chambers = new MP[count][];
+            for (int r = 0; r < count; r++) {
+                chambers[r] = setup.generateMPs(start + r);
             }
-            for (int j = 0; j < DATA_PER_ROUND; j++) {
-                List<Integer> values = new ArrayList<>(runs);
-                for (int k = 0; k < runs; k++) {
-                    values.add(data[k][i][j]);
+            recorder.lap(RunMetrics.Phase.GENERATE);
+            BatchChamber batch = new BatchChamber(chambers, tables);
+            for (int i = 0; i < measurePoints; i++) {
+                if (i > 0) {
+                    batch.runRound();
                 }
-
-                //sort the values
-                values.sort(Integer::compareTo);
-
-                double median;
-                double q1;
-                double q3;
-
-                int vSize = values.size();
-                int hSize = vSize / 2;
-                int qSize = vSize / 4;
-                if (vSize % 2 == 0) {
-                    //even size pick average of two middle elements
-                    median = (values.get(hSize) + values.get(hSize + 1)) / 2.0;
-                    q1 = (values.get(qSize) + values.get(qSize - 1)) / 2.0;
-                    q3 = (values.get(vSize - qSize) + values.get(vSize - qSize - 1)) / 2.0;
-                } else {
-                    //uneven size just pick the middle one
-                    median = values.get(hSize);
-                    q1 = (values.get(qSize) + values.get(qSize - 1)) / 2.0;
-                    q3 = (values.get(vSize - qSize) + values.get(vSize - qSize - 1)) / 2.0;
+                for (int r = 0; r < count; r++) {
+                    roundVotes[r] = votes[r][i];
                 }
-                //put the median in
-//                System.out.println("Median for round " + i + " datapoint " + j + " == " + median);
-                medians[j][i] = median;
-                q1s[j][i] = q1;
-                q3s[j][i] = q3;
-
-                DoubleSummaryStatistics dss = values.stream().mapToDouble(a -> a).summaryStatistics();
-                //calculate mean
-
-                means[j][i] = dss.getAverage();
-                maxs[j][i] = dss.getMax();
-                mins[j][i] = dss.getMin();
+                batch.countVotes(roundVotes);
+            }
+            recorder.lap(RunMetrics.Phase.DEBATE);
+            for (int r = 0; r < count; r++) {
+                rangeStatistics.addRun(votes[r], 1, setup.getSampling().replicate(start + r));
             }
+            recorder.lap(RunMetrics.Phase.STATISTICS);
+            for (int r = 0; r < count; r++) {
+                writeTrajectory(start + r, votes[r]);
+            }
+            recorder.lap(RunMetrics.Phase.OUTPUT);
+            //the runs of a batch finish together, each is counted with an equal part
+            recorder.endRun(count);
         }
+    }
 
-        for (int i = 0; i < finalVotesCount.length; i++) {
-            for (int j = 0; j < finalVotesCount[i].length; j++) {
-                finalPercentage[i][j] = finalVotesCount[i][j] / (double) runs;
+    private void writeTrajectory(int run, int[][] votes) {
+        if (trajectories != null) {
+            try {
+                trajectories.write(run, votes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
+    }
 
-        //output as csv for now
+    int getRuns() {
+        return runs;
+    }
 
-        StringBuilder mainBuilder = new StringBuilder("Means\n\n");
-        mainBuilder.append(valuesToCSV(means));
+    Setup getSetup() {
+        return setup;
+    }
 
-        mainBuilder.append("\nMedians\n");
-        mainBuilder.append(valuesToCSV(medians));
+    int getMeasurePoints() {
+        return measurePoints;
+    }
 
-        mainBuilder.append("\nMins\n");
-        mainBuilder.append(valuesToCSV(mins));
+    public void runAll() {
+        executeRuns(true);
+        System.out.println("\n\n\n");
+        System.out.println(resultsToString(statistics));
+        System.out.print(metrics.summary());
+    }
 
-        mainBuilder.append("\nMaxs\n");
-        mainBuilder.append(valuesToCSV(maxs));
+    public void runToFile(String name) {
+        runToFile(name, false);
+    }
 
-        mainBuilder.append("\nQ1\n");
-        mainBuilder.append(valuesToCSV(q1s));
+    public void runToFile(String name, String baseDir) {
+        runToFile(name, false, baseDir);
+    }
 
-        mainBuilder.append("\nQ3\n");
-        mainBuilder.append(valuesToCSV(q3s));
+    public void runToFile(String name, boolean both) {
+        runToFile(name, both, ".");
+    }
 
-        mainBuilder.append("\nWINS\n");
-        mainBuilder.append(runPartToCSV(finalVotesCount));
+    public void runToFile(String name, boolean both, String baseDir) {
+        File dir = outputDirectory(baseDir);
+        String fileName = outputFileName(dir, name, both);
 
-        mainBuilder.append("\n% WINS\n");
-        mainBuilder.append(valuesToCSV(finalPercentage));
+        if (!both) {
+            executeRuns(false);
+            writeResults(new File(dir, fileName + ".txt"));
+            System.out.println("Saved to " + fileName + ".txt");
+            System.out.print(metrics.summary());
+            // we only test one side
+            return;
+        }
 
-        return  mainBuilder.toString();
-    }
+        Results pro = new Results(runs, setup, VoteOptions.PRO, measurePoints - 1);
+        Results against = new Results(runs, setup, VoteOptions.AGAINST, measurePoints - 1);
+        pro.engine = engine;
+        against.engine = engine;
+        pro.stoppingRule = stoppingRule;
+        against.stoppingRule = stoppingRule;
+        if (trajectoryFile != null) {
+            pro.trajectoryFile = withSuffix(trajectoryFile, "-pro-starts");
+            against.trajectoryFile = withSuffix(trajectoryFile, "-against-starts");
+        }
+        executeRuns(parallelism, false, pro, against);
 
-    private String valuesToCSV(double[][] values) {
-        StringBuilder builder = new StringBuilder();
-        for (int vote = 0; vote < DATA_PER_ROUND; vote++) {
-            builder.append(VoteOptions.values()[vote].getName()).append(":");
+        pro.writeResults(new File(dir, fileName + "-pro-starts" + ".txt"));
+        against.writeResults(new File(dir, fileName + "-against-starts" + ".txt"));
 
-            for (int i = 0; i < TOTAL_MEASURE_POINTS; i++) {
-                builder.append(";").append(String.format("%10.2f", values[vote][i]));
+        System.out.println("Saved to " + fileName + ".txt");
+        System.out.print("PRO starts: " + pro.metrics.summary());
+        System.out.print("AGAINST starts: " + against.metrics.summary());
+    }
+
+    static File outputDirectory(String baseDir) {
+        File dir = new File(baseDir);
+        if (!dir.exists()) {
+            if (!dir.mkdirs()) {
+                System.out.println("Could not create directory");
             }
-            //print median to out
-            builder.append("\n");
         }
-        return builder.toString();
+        if (!dir.isDirectory()) {
+            System.out.println(dir.getAbsolutePath());
+            dir = new File(".");
+        }
+        return dir;
+    }
+
+    static String outputFileName(File dir, String name, boolean both) {
+        return outputFileName(dir, name, both, ReportFormat.SEMICOLON.getExtension());
+    }
+
+    /**
+     * Picks the first run-N-name that does not exist yet in the directory.
+     */
+    static String outputFileName(File dir, String name, boolean both, String extension) {
+        int file = 0;
+        String fileName = "run-" + file + "-" + name;
+        while(new File(dir, fileName + (both ? "-pro-starts" : "") + extension).exists() && ++file <
+                100) {
+            fileName = "run-" +file + "-" + name;
+        }
+        return fileName;
+    }
+
+    private void writeResults(File file) {
+        long start = System.nanoTime();
+        writeResults(statistics, file);
+        metrics.add(RunMetrics.Phase.OUTPUT, System.nanoTime() - start);
+    }
+
+    static void writeResults(RunStatistics statistics, File file) {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+            writer.write(resultsToString(statistics));
+        } catch(IOException e) {
+            e.printStackTrace();
+        }
     }
 
-    private String runPartToCSV(int[][] values) {
-        StringBuilder builder = new StringBuilder();
-        for (int vote = 0; vote < DATA_PER_ROUND; vote++) {
-            builder.append(VoteOptions.values()[vote].getName()).append(":");
+    static String resultsToString(RunStatistics statistics) {
+        return ReportFormat.SEMICOLON.format(new Report(statistics));
+    }
 
-            for (int i = 0; i < TOTAL_MEASURE_POINTS; i++) {
-                builder.append(";").append(String.format("%6d", values[vote][i]));
+    @SuppressWarnings("serial")
+    private class RunRange extends RecursiveAction {
+
+        private static final int SPLIT_THRESHOLD = 64;
+
+        private final int from;
+        private final int to;
+        private final boolean report;
+
+        private RunRange(int from, int to, boolean report) {
+            this.from = from;
+            this.to = to;
+            this.report = report;
+        }
+
+        private void executeSequential() {
+            executeRange(from, to, report);
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD || setup.isDeterministic()) {
+                executeRange(from, to, report);
+                return;
             }
-            //print median to out
-            builder.append("\n");
+            int middle = (from + to) >>> 1;
+            invokeAll(new RunRange(from, middle, report), new RunRange(middle, to, report));
         }
-        return builder.toString();
     }
 
     public static class RoundResult {
@@ -265,13 +537,16 @@ public class Results {
 
         public RoundResult(int[] votes) {
             this.votes = votes;
+            this.totalVote = totalVote(votes);
+        }
+
+        public static VoteOptions totalVote(int[] votes) {
             if (votes[VoteOptions.PRO.ordinal()] > votes[VoteOptions.AGAINST.ordinal()]) {
-                totalVote = VoteOptions.PRO;
+                return VoteOptions.PRO;
             } else if (votes[VoteOptions.PRO.ordinal()] < votes[VoteOptions.AGAINST.ordinal()]) {
-                totalVote = VoteOptions.AGAINST;
-            } else {
-                totalVote = VoteOptions.NEUTRAL;
+                return VoteOptions.AGAINST;
             }
+            return VoteOptions.NEUTRAL;
         }
 
         public int[] getVotes() {
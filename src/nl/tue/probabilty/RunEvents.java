@@ -0,0 +1,66 @@
+package nl.tue.probabilty;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events of the runs, recorded with for example
+ * -XX:StartFlightRecording=filename=runs.jfr.
+ */
+final class RunEvents {
+
+    private RunEvents() {
+    }
+
+    @Name("nl.tue.probabilty.RunRange")
+    @Label("Run Range")
+    @Category("Politics Simulation")
+    @Description("A range of runs executed on one thread")
+    static class Range extends Event {
+
+        @Label("Runs")
+        long runs;
+
+        @Label("Generate Time")
+        @Timespan
+        long generateTime;
+
+        @Label("Debate Time")
+        @Timespan
+        long debateTime;
+
+        @Label("Statistics Time")
+        @Timespan
+        long statisticsTime;
+
+        @Label("Output Time")
+        @Timespan
+        long outputTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("nl.tue.probabilty.Batch")
+    @Label("Batch")
+    @Category("Politics Simulation")
+    @Description("All runs of one batch")
+    static class Batch extends Event {
+
+        @Label("Runs")
+        long runs;
+
+        @Label("Runs per Second")
+        double runsPerSecond;
+
+        @Label("Allocated per Run")
+        @DataAmount
+        long allocatedPerRun;
+    }
+}
@@ -0,0 +1,325 @@
+package nl.tue.probabilty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures where the time of the runs goes: the runs per second, the time spent generating the
+ * MPs, debating, collecting the statistics and writing the output, a histogram of the latency of
+ * every run and the bytes allocated per run.
+ * <p>
+ * Every range of runs is measured by its own {@link Recorder} on the thread that executes it,
+ * which adds its totals to the metrics once the range is done, so measuring costs a few
+ * System.nanoTime calls per run. Every batch has its own metrics and adds them to the metrics of
+ * the whole process as well, which are available through JMX as
+ * {@value #OBJECT_NAME}. Every finished range is also a {@link RunEvents.Range} event for Java
+ * Flight Recorder.
+ */
+public class RunMetrics implements RunMetricsMBean {
+
+    public static final String OBJECT_NAME = "nl.tue.probabilty:type=RunMetrics";
+
+    /**
+     * The parts of a run, in the order they happen.
+     */
+    public enum Phase {
+        GENERATE, DEBATE, STATISTICS, OUTPUT
+    }
+
+    //8 bins per power of two, so a bin is at most 12.5% wider than its lower bound
+    private static final int SUB_BINS = 8;
+    private static final int SUB_BITS = 3;
+    private static final int BINS = (64 - SUB_BITS + 1) * SUB_BINS;
+
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationBean();
+    private static RunMetrics process;
+
+    private final RunMetrics parent;
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder allocationRuns = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(BINS);
+    private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+    public RunMetrics() {
+        this(null);
+    }
+
+    /**
+     * @param parent the metrics that everything measured is added to as well, or null
+     */
+    public RunMetrics(RunMetrics parent) {
+        this.parent = parent;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * The metrics of every run in this process, registered with the platform MBean server the
+     * first time they are used.
+     */
+    public static synchronized RunMetrics process() {
+        if (process == null) {
+            process = new RunMetrics();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(process,
+                        new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                System.out.println("Could not register the run metrics: " + e.getMessage());
+            }
+        }
+        return process;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+            if (bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled()) {
+                return bean;
+            }
+        }
+        return null;
+    }
+
+    private static long allocatedOnThread() {
+        return ALLOCATIONS == null ? -1 : ALLOCATIONS.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Starts measuring a range of runs on the calling thread.
+     */
+    Recorder recorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Adds time spent outside of a range of runs, like writing the results of a batch.
+     */
+    void add(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()].add(nanos);
+        if (parent != null) {
+            parent.add(phase, nanos);
+        }
+    }
+
+    private void add(Recorder recorder, long allocated) {
+        runs.add(recorder.runs);
+        for (Phase phase : Phase.values()) {
+            phaseNanos[phase.ordinal()].add(recorder.phaseNanos[phase.ordinal()]);
+        }
+        if (allocated >= 0) {
+            allocatedBytes.add(allocated);
+            allocationRuns.add(recorder.runs);
+        }
+        for (int i = 0; i < BINS; i++) {
+            if (recorder.latencies[i] != 0) {
+                latencies.addAndGet(i, recorder.latencies[i]);
+            }
+        }
+        firstStart.accumulateAndGet(recorder.start, Math::min);
+        lastEnd.accumulateAndGet(recorder.last, Math::max);
+        if (parent != null) {
+            parent.add(recorder, allocated);
+        }
+    }
+
+    static int bin(long nanos) {
+        if (nanos < SUB_BINS) {
+            return (int) Math.max(0, nanos);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BINS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BINS + sub;
+    }
+
+    static long binStart(int bin) {
+        if (bin < SUB_BINS) {
+            return bin;
+        }
+        int exponent = bin / SUB_BINS + SUB_BITS - 1;
+        return (long) (SUB_BINS + bin % SUB_BINS) << (exponent - SUB_BITS);
+    }
+
+    /**
+     * Measures a range of runs on one thread, the totals are added to the metrics by
+     * {@link #finish()}.
+     */
+    final class Recorder {
+
+        private final long start;
+        private final long allocationStart;
+        private final RunEvents.Range event = new RunEvents.Range();
+        private final long[] phaseNanos = new long[Phase.values().length];
+        private final long[] latencies = new long[BINS];
+        private long runStart;
+        private long last;
+        private long runs;
+
+        private Recorder() {
+            event.begin();
+            allocationStart = allocatedOnThread();
+            start = System.nanoTime();
+            last = start;
+        }
+
+        void startRun() {
+            runStart = System.nanoTime();
+            last = runStart;
+        }
+
+        /**
+         * Ends the given phase of the current run, it lasted since the end of the previous one.
+         */
+        void lap(Phase phase) {
+            long now = System.nanoTime();
+            phaseNanos[phase.ordinal()] += now - last;
+            last = now;
+        }
+
+        /**
+         * Ends the current run, which counts for count runs that each took the time divided
+         * over them.
+         */
+        void endRun(long count) {
+            long latency = (last - runStart) / Math.max(1, count);
+            latencies[bin(latency)] += count;
+            runs += count;
+        }
+
+        void finish() {
+            long allocationEnd = allocatedOnThread();
+            long allocated = allocationStart < 0 || allocationEnd < 0 ? -1 :
+                    allocationEnd - allocationStart;
+            add(this, allocated);
+            if (event.shouldCommit()) {
+                event.runs = runs;
+                event.generateTime = phaseNanos[Phase.GENERATE.ordinal()];
+                event.debateTime = phaseNanos[Phase.DEBATE.ordinal()];
+                event.statisticsTime = phaseNanos[Phase.STATISTICS.ordinal()];
+                event.outputTime = phaseNanos[Phase.OUTPUT.ordinal()];
+                event.allocated = Math.max(0, allocated);
+                event.commit();
+            }
+        }
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    /**
+     * The runs per second between the start of the first range and the end of the last one.
+     */
+    @Override
+    public double getRunsPerSecond() {
+        long elapsed = lastEnd.get() - firstStart.get();
+        return elapsed <= 0 ? 0 : getRuns() * 1e9 / elapsed;
+    }
+
+    public double getSeconds(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum() / 1e9;
+    }
+
+    @Override
+    public double getGenerateSeconds() {
+        return getSeconds(Phase.GENERATE);
+    }
+
+    @Override
+    public double getDebateSeconds() {
+        return getSeconds(Phase.DEBATE);
+    }
+
+    @Override
+    public double getStatisticsSeconds() {
+        return getSeconds(Phase.STATISTICS);
+    }
+
+    @Override
+    public double getOutputSeconds() {
+        return getSeconds(Phase.OUTPUT);
+    }
+
+    /**
+     * The bytes allocated per run, or -1 if the JVM does not measure allocations per thread.
+     */
+    @Override
+    public double getAllocatedBytesPerRun() {
+        long measured = allocationRuns.sum();
+        return measured == 0 ? -1 : allocatedBytes.sum() / (double) measured;
+    }
+
+    /**
+     * The latency below which the given fraction of the runs finished, rounded down to the bin
+     * it falls in.
+     */
+    public double getLatencyMicros(double fraction) {
+        long total = 0;
+        for (int i = 0; i < BINS; i++) {
+            total += latencies.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int i = 0; i < BINS; i++) {
+            seen += latencies.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return binStart(i) / 1e3;
+            }
+        }
+        return binStart(BINS - 1) / 1e3;
+    }
+
+    @Override
+    public double getMedianLatencyMicros() {
+        return getLatencyMicros(0.5);
+    }
+
+    @Override
+    public double getLatency99Micros() {
+        return getLatencyMicros(0.99);
+    }
+
+    @Override
+    public double getMaxLatencyMicros() {
+        return getLatencyMicros(1);
+    }
+
+    /**
+     * A few lines that summarize the metrics, for the end of a batch.
+     */
+    public String summary() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("Did %d runs, %.1f runs/s%n", getRuns(),
+                getRunsPerSecond()));
+        double total = 0;
+        for (Phase phase : Phase.values()) {
+            total += getSeconds(phase);
+        }
+        builder.append("Time:");
+        for (Phase phase : Phase.values()) {
+            builder.append(String.format(" %s %.2f s (%.1f%%)", phase.name().toLowerCase(),
+                    getSeconds(phase), total == 0 ? 0 : 100 * getSeconds(phase) / total));
+        }
+        builder.append(String.format("%nLatency: median %.1f us, 90%% %.1f us, 99%% %.1f us," +
+                        " max %.1f us%n", getMedianLatencyMicros(), getLatencyMicros(0.9),
+                getLatency99Micros(), getMaxLatencyMicros()));
+        double allocated = getAllocatedBytesPerRun();
+        if (allocated >= 0) {
+            builder.append(String.format("Allocated %.0f bytes per run%n", allocated));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package nl.tue.probabilty;
+
+/**
+ * The attributes of {@link RunMetrics} that are available through JMX.
+ */
+public interface RunMetricsMBean {
+
+    long getRuns();
+
+    double getRunsPerSecond();
+
+    double getGenerateSeconds();
+
+    double getDebateSeconds();
+
+    double getStatisticsSeconds();
+
+    double getOutputSeconds();
+
+    double getAllocatedBytesPerRun();
+
+    double getMedianLatencyMicros();
+
+    double getLatency99Micros();
+
+    double getMaxLatencyMicros();
+}
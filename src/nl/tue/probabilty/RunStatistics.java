@@ -0,0 +1,253 @@
+package nl.tue.probabilty;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Streaming statistics over finished runs. For every measure point and vote option it keeps a
+ * histogram of the vote counts and it counts which option won, so the memory does not grow with
+ * the number of runs.
+ * <p>
+ * Runs that belong to one of the {@link SamplingStrategy#REPLICATES} replicates of a sampling
+ * strategy also count their wins per replicate, the spread between the replicates gives the error
+ * of the win fractions.
+ */
+public class RunStatistics {
+
+    private static final int MAGIC = 0x50535253;
+    private static final int VERSION = 2;
+
+    private final int measurePoints;
+    private final CountHistogram[][] votes;
+    private final long[][] wins;
+    private long runs;
+    private long[][][] replicateWins;
+    private long[] replicateRuns;
+
+    public RunStatistics(int measurePoints) {
+        this.measurePoints = measurePoints;
+        votes = new CountHistogram[measurePoints][Results.DATA_PER_ROUND];
+        for (int i = 0; i < measurePoints; i++) {
+            for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                votes[i][j] = new CountHistogram();
+            }
+        }
+        wins = new long[Results.DATA_PER_ROUND][measurePoints];
+    }
+
+    /**
+     * Adds a finished run.
+     *
+     * @param runVotes the votes of the run per measure point, indexed by vote option ordinal
+     */
+    public void addRun(int[][] runVotes) {
+        addRun(runVotes, 1);
+    }
+
+    /**
+     * Adds count runs that all had the same votes.
+     */
+    public void addRun(int[][] runVotes, long count) {
+        addRun(runVotes, count, -1);
+    }
+
+    /**
+     * Adds count runs that all had the same votes and all belong to the given replicate.
+     *
+     * @param replicate the replicate of the runs, or -1 if the runs are independent
+     */
+    public void addRun(int[][] runVotes, long count, int replicate) {
+        if (replicate >= 0 && replicateWins == null) {
+            replicateWins = new long[SamplingStrategy.REPLICATES][Results.DATA_PER_ROUND]
+                    [measurePoints];
+            replicateRuns = new long[SamplingStrategy.REPLICATES];
+        }
+        for (int i = 0; i < measurePoints; i++) {
+            for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                votes[i][j].add(runVotes[i][j], count);
+            }
+            int winner = Results.RoundResult.totalVote(runVotes[i]).ordinal();
+            wins[winner][i] += count;
+            if (replicate >= 0) {
+                replicateWins[replicate][winner][i] += count;
+            }
+        }
+        runs += count;
+        if (replicate >= 0) {
+            replicateRuns[replicate] += count;
+        }
+    }
+
+    public void merge(RunStatistics other) {
+        if (other.measurePoints != measurePoints) {
+            throw new IllegalArgumentException("Can not merge statistics of " +
+                    other.measurePoints + " measure points into " + measurePoints);
+        }
+        for (int i = 0; i < measurePoints; i++) {
+            for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                votes[i][j].merge(other.votes[i][j]);
+            }
+        }
+        for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+            for (int i = 0; i < measurePoints; i++) {
+                wins[j][i] += other.wins[j][i];
+            }
+        }
+        runs += other.runs;
+        if (other.replicateWins != null) {
+            if (replicateWins == null) {
+                replicateWins = new long[SamplingStrategy.REPLICATES][Results.DATA_PER_ROUND]
+                        [measurePoints];
+                replicateRuns = new long[SamplingStrategy.REPLICATES];
+            }
+            for (int g = 0; g < SamplingStrategy.REPLICATES; g++) {
+                for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                    for (int i = 0; i < measurePoints; i++) {
+                        replicateWins[g][j][i] += other.replicateWins[g][j][i];
+                    }
+                }
+                replicateRuns[g] += other.replicateRuns[g];
+            }
+        }
+    }
+
+    public int getMeasurePoints() {
+        return measurePoints;
+    }
+
+    public long getRuns() {
+        return runs;
+    }
+
+    public CountHistogram getVotes(int measurePoint, VoteOptions option) {
+        return votes[measurePoint][option.ordinal()];
+    }
+
+    public long getWins(int measurePoint, VoteOptions option) {
+        return wins[option.ordinal()][measurePoint];
+    }
+
+    /**
+     * Whether the runs were divided over replicates, so {@link #getWinError(int, VoteOptions)}
+     * is known.
+     */
+    public boolean hasReplicates() {
+        return getFilledReplicates() > 1;
+    }
+
+    /**
+     * The number of replicates with at least one run, the error of the win fractions has one
+     * degree of freedom less.
+     */
+    public int getFilledReplicates() {
+        if (replicateRuns == null) {
+            return 0;
+        }
+        int filled = 0;
+        for (long replicate : replicateRuns) {
+            if (replicate > 0) {
+                filled++;
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * The standard error of the fraction of runs the option wins, estimated from the spread of
+     * the win fractions of the replicates. Returns NaN if the runs have no replicates.
+     */
+    public double getWinError(int measurePoint, VoteOptions option) {
+        if (!hasReplicates()) {
+            return Double.NaN;
+        }
+        double fraction = getWins(measurePoint, option) / (double) runs;
+        double sum = 0;
+        int filled = 0;
+        for (int g = 0; g < SamplingStrategy.REPLICATES; g++) {
+            if (replicateRuns[g] == 0) {
+                continue;
+            }
+            //ratio estimator, replicates with more runs weigh more
+            double difference = replicateWins[g][option.ordinal()][measurePoint] -
+                    fraction * replicateRuns[g];
+            sum += difference * difference;
+            filled++;
+        }
+        return Math.sqrt(sum * filled / (filled - 1)) / runs;
+    }
+
+    /**
+     * Writes the statistics in a binary format that can be read back by
+     * {@link #readFrom(DataInput)} and merged with the statistics of other runs.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(measurePoints);
+        out.writeInt(Results.DATA_PER_ROUND);
+        out.writeLong(runs);
+        for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+            for (int i = 0; i < measurePoints; i++) {
+                out.writeLong(wins[j][i]);
+            }
+        }
+        for (int i = 0; i < measurePoints; i++) {
+            for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                votes[i][j].writeTo(out);
+            }
+        }
+        out.writeBoolean(replicateWins != null);
+        if (replicateWins != null) {
+            for (int g = 0; g < SamplingStrategy.REPLICATES; g++) {
+                out.writeLong(replicateRuns[g]);
+                for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                    for (int i = 0; i < measurePoints; i++) {
+                        out.writeLong(replicateWins[g][j][i]);
+                    }
+                }
+            }
+        }
+    }
+
+    public static RunStatistics readFrom(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a run statistics file");
+        }
+        int version = in.readInt();
+        //version 1 is the same without the replicates
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported run statistics version " + version);
+        }
+        int measurePoints = in.readInt();
+        if (in.readInt() != Results.DATA_PER_ROUND) {
+            throw new IOException("Statistics were made with different vote options");
+        }
+        RunStatistics statistics = new RunStatistics(measurePoints);
+        statistics.runs = in.readLong();
+        for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+            for (int i = 0; i < measurePoints; i++) {
+                statistics.wins[j][i] = in.readLong();
+            }
+        }
+        for (int i = 0; i < measurePoints; i++) {
+            for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                statistics.votes[i][j] = CountHistogram.readFrom(in);
+            }
+        }
+        if (version > 1 && in.readBoolean()) {
+            statistics.replicateWins = new long[SamplingStrategy.REPLICATES]
+                    [Results.DATA_PER_ROUND][measurePoints];
+            statistics.replicateRuns = new long[SamplingStrategy.REPLICATES];
+            for (int g = 0; g < SamplingStrategy.REPLICATES; g++) {
+                statistics.replicateRuns[g] = in.readLong();
+                for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                    for (int i = 0; i < measurePoints; i++) {
+                        statistics.replicateWins[g][j][i] = in.readLong();
+                    }
+                }
+            }
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,51 @@
+package nl.tue.probabilty;
+
+/**
+ * How a {@link Setup} turns run indices into the random numbers of its MPs.
+ * <p>
+ * The strategies other than {@link #PSEUDO_RANDOM} make runs depend on each other, so the runs
+ * are spread over {@link #REPLICATES} interleaved replicates that are independent of each other.
+ * The spread between the replicates gives the error of the win fractions, see
+ * {@link RunStatistics#getWinError(int, VoteOptions)}.
+ */
+public enum SamplingStrategy {
+    /**
+     * Every run has its own independent random numbers.
+     */
+    PSEUDO_RANDOM,
+    /**
+     * Runs 2k and 2k + 1 form a pair, the second run uses the mirrored uniform numbers 1 - u of
+     * the first, which mirrors every opinion within its distribution.
+     */
+    ANTITHETIC,
+    /**
+     * Every run is a point of the scrambled Sobol sequence, with one dimension per attribute of
+     * every MP, mapped through the inverse cdf of the distributions. Every replicate uses its own
+     * scramble.
+     */
+    SOBOL;
+
+    public static final int REPLICATES = 16;
+
+    /**
+     * The replicate of the run, or -1 if the runs are all independent.
+     */
+    public int replicate(int run) {
+        switch (this) {
+            case ANTITHETIC:
+                //both runs of a pair are in the same replicate
+                return (run >>> 1) % REPLICATES;
+            case SOBOL:
+                return run % REPLICATES;
+        }
+        return -1;
+    }
+
+    /**
+     * The number of runs rounded up so it does not end between the two runs of an antithetic
+     * pair.
+     */
+    public int wholePairs(int runs) {
+        return this == ANTITHETIC ? runs + (runs & 1) : runs;
+    }
+}
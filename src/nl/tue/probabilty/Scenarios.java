@@ -0,0 +1,61 @@
+package nl.tue.probabilty;
+
+/**
+ * The setups used in the experiments, available by name so other processes can recreate them.
+ * Names are either fixed, like "zondag", or a prefix followed by a number, like "stub-minor-55".
+ */
+public final class Scenarios {
+
+    private Scenarios() {
+    }
+
+    public static Setup create(String name) {
+        switch (name) {
+            case "default":
+                return Setup.getDefault();
+            case "consistency":
+                return Setup.getDefaultConsistency();
+            case "zondag":
+                return new Setup.TweedeKamerSetup(Setup.zondag);
+            case "roken":
+                return new Setup.TweedeKamerSetup(Setup.roken);
+        }
+        int split = name.lastIndexOf('-');
+        if (split > 0) {
+            String prefix = name.substring(0, split);
+            int value;
+            try {
+                value = Integer.parseInt(name.substring(split + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Unknown scenario " + name);
+            }
+            switch (prefix) {
+                case "root-n-accepting":
+                    return rootNAccepting(value);
+                case "root-n-normStubb":
+                    return rootNNormalStubborn(value);
+                case "stub-minor":
+                    return stubbornMinority(value);
+                case "against":
+                    return against(value);
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario " + name);
+    }
+
+    public static Setup rootNAccepting(int pro) {
+        return new Setup.RootNTestSetup(pro, 0, 1.0);
+    }
+
+    public static Setup rootNNormalStubborn(int pro) {
+        return new Setup.RootNTestSetup(pro, 0);
+    }
+
+    public static Setup stubbornMinority(int minority) {
+        return new Setup.StubbornMinority(minority, 400.0, 150.0, -600.0, 100.0, 1.0, 0.1);
+    }
+
+    public static Setup against(int minority) {
+        return new Setup.StubbornMinority(minority, 400.0, 200.0, -400.0, 200.0, 1.0, 1.0);
+    }
+}
@@ -1,23 +1,167 @@
 package nl.tue.probabilty;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public abstract class Setup {
 
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long seed = new SplittableRandom().nextLong();
+    private int size = LowerChambers.NUM_MP;
+    private SamplingStrategy sampling = SamplingStrategy.PSEUDO_RANDOM;
+    private ImportanceSampling importanceSampling;
+
     public abstract MP[] generateMPs(int run);
 
+    /**
+     * Whether every run generates exactly the same MPs, all runs then have the same outcome and
+     * only one of them has to be simulated.
+     */
+    public boolean isDeterministic() {
+        return false;
+    }
+
+    /**
+     * The number of MPs generated for every run.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Must have at least one MP");
+        }
+        this.size = size;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the master seed, every run derives its own independent stream from this seed and its
+     * run index so the generated MPs do not depend on the order or thread the runs execute on.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public SamplingStrategy getSampling() {
+        return sampling;
+    }
+
+    /**
+     * Sets how the random numbers of the MPs are chosen, only the attributes drawn with
+     * {@link #draw(NormalDistribution, int, Channel, int)} follow the strategy.
+     */
+    public void setSampling(SamplingStrategy sampling) {
+        this.sampling = sampling;
+    }
+
+    ImportanceSampling getImportanceSampling() {
+        return importanceSampling;
+    }
+
+    /**
+     * Draws the opinions from the tilted distributions of the importance sampling instead, null
+     * draws them from the distributions of the setup again. Only meant for the
+     * {@link RareEventEstimator}, which weighs every run by its likelihood ratio.
+     */
+    void setImportanceSampling(ImportanceSampling importanceSampling) {
+        this.importanceSampling = importanceSampling;
+    }
+
+    protected SplittableRandom random(int run) {
+        return new SplittableRandom(runSeed(seed, run));
+    }
+
+    /**
+     * The attributes of an MP that can be drawn from their own stream.
+     */
+    protected enum Channel {
+        OPINION, SPEECH, STUBBORNNESS
+    }
+
+    /**
+     * The stream of one attribute of one MP in the given run. An MP drawn from these streams
+     * gets the same random numbers no matter which group it is in or how many MPs the other
+     * groups have, so setups that only differ in those sizes generate chambers that only differ
+     * in the MPs that switched groups. Together with a shared seed this gives common random
+     * numbers across the points of a sweep, see {@link Sweep#commonRandomNumbers(long)}.
+     */
+    protected SplittableRandom random(int run, Channel channel, int mp) {
+        //above the indices of the run streams, unique as long as there are less than 2^30 MPs
+        long stream = (run + 1L) << 32 | (long) mp << 2 | channel.ordinal();
+        return new SplittableRandom(streamSeed(seed, stream));
+    }
+
+    /**
+     * Draws one attribute of one MP in the given run from the distribution, following the
+     * sampling strategy of the setup.
+     */
+    protected double draw(NormalDistribution distribution, int run, Channel channel, int mp) {
+        ImportanceSampling importance = importanceSampling;
+        if (importance == null || channel != Channel.OPINION) {
+            return sample(distribution, run, channel, mp);
+        }
+        NormalDistribution proposal = importance.proposal(distribution);
+        double value = sample(proposal, run, channel, mp);
+        importance.record(distribution, value);
+        return value;
+    }
+
+    private double sample(NormalDistribution distribution, int run, Channel channel, int mp) {
+        switch (sampling) {
+            case ANTITHETIC:
+                //the second run of a pair mirrors the uniform number of the first
+                double u = uniform(random(run & ~1, channel, mp));
+                return distribution.quantile((run & 1) == 0 ? u : 1 - u);
+            case SOBOL:
+                int replicate = sampling.replicate(run);
+                int dimension = channel.ordinal() * size + mp;
+                //every replicate and dimension has its own digital shift, below the run streams
+                int shift = (int) streamSeed(seed, ~((long) replicate << 32 | dimension));
+                return distribution.quantile(SobolSequence.coordinate(
+                        run / SamplingStrategy.REPLICATES, dimension, shift));
+            default:
+                return distribution.nextValue(random(run, channel, mp));
+        }
+    }
+
+    protected int drawInt(NormalDistribution distribution, int run, Channel channel, int mp) {
+        return (int) draw(distribution, run, channel, mp);
+    }
+
+    /**
+     * A uniform number strictly between 0 and 1.
+     */
+    private static double uniform(SplittableRandom random) {
+        return ((random.nextLong() >>> 11) + 0.5) * 0x1.0p-53;
+    }
+
+    static long runSeed(long seed, int run) {
+        return streamSeed(seed, run + 1L);
+    }
+
+    private static long streamSeed(long seed, long stream) {
+        //murmur3 finalizer over the seed advanced by the stream index
+        long z = seed + GOLDEN_GAMMA * stream;
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
     public static Setup getDefault() {
         return new Setup() {
+            private final NormalDistribution fullNormalDist = new FullNormalDistribution();
+
             @Override
             public MP[] generateMPs(int run) {
-                MP[] mps = new MP[LowerChambers.NUM_MP];
-
-                for (int i = 0; i < LowerChambers.NUM_MP; i++) {
-                    int opinion = fullNormalDist.nextIntValue();
-                    while (Math.abs(opinion) > MP.OPINION_MAX) {
-                        opinion = fullNormalDist.nextIntValue();
-                    }
-                    mps[i] = new MP(opinion, 1.0, 1.0);
+                MP[] mps = new MP[getSize()];
+
+                for (int i = 0; i < mps.length; i++) {
+                    mps[i] = new MP(drawInt(fullNormalDist, run, Channel.OPINION, i), 1.0, 1.0);
                 }
                 return mps;
             }
@@ -28,14 +172,18 @@ public abstract class Setup {
         return new Setup() {
             @Override
             public MP[] generateMPs(int run) {
-                MP[] mps = new MP[LowerChambers.NUM_MP];
-                for (int i = 0; i < LowerChambers.NUM_MP; i+= 3) {
-                    mps[i] = new MP(500, 1.0, 1.0);
-                    mps[i + 1] = new MP(0, 1.0, 1.0);
-                    mps[i + 2] = new MP(-500, 1.0, 1.0);
+                MP[] mps = new MP[getSize()];
+                for (int i = 0; i < mps.length; i++) {
+                    //repeats 500, 0, -500
+                    mps[i] = new MP(500 - 500 * (i % 3), 1.0, 1.0);
                 }
                 return mps;
             }
+
+            @Override
+            public boolean isDeterministic() {
+                return true;
+            }
         };
     }
 
@@ -52,10 +200,14 @@ public abstract class Setup {
         private final double stubMaj;
         private final double stubMin;
 
+        private final NormalDistribution majority;
+        private final NormalDistribution minority;
+
         public StubbornMinority(int minoritySize, double meanMaj, double varMaj, double meanMin,
                                 double varMin, double stubMaj, double stubMin) {
-            if (minoritySize > 150 || minoritySize < 0) {
-                throw new IllegalArgumentException("Split must be between 0 and 150");
+            //the size can still change, generateMPs checks that the minority fits
+            if (minoritySize < 0) {
+                throw new IllegalArgumentException("Minority can not be negative");
             }
             this.minoritySize = minoritySize;
             this.meanMax = meanMaj;
@@ -64,21 +216,25 @@ public abstract class Setup {
             this.varMin = varMin;
             this.stubMaj = stubMaj;
             this.stubMin = stubMin;
+            //opinions outside of the range are clamped by the MP
+            this.majority = new NormalDistribution(meanMaj, varMaj);
+            this.minority = new NormalDistribution(meanMin, varMin);
         }
 
         @Override
         public MP[] generateMPs(int run) {
-            MP[] mps = new MP[LowerChambers.NUM_MP];
-            Random rand = new Random();
-            NormalDistribution normalMaj = new NormalDistribution(rand.nextLong(), meanMax, varMaj);
-            NormalDistribution normalMin = new NormalDistribution(rand.nextLong(), meanMin, varMin);
+            MP[] mps = new MP[getSize()];
+            if (minoritySize > mps.length) {
+                throw new IllegalStateException("Minority of " + minoritySize +
+                        " does not fit in " + mps.length + " MPs");
+            }
 
             for (int i = 0; i < minoritySize; i++) {
-                mps[i] = new MP(normalMin.nextIntValue(), 1.0, stubMin);
+                mps[i] = new MP(drawInt(minority, run, Channel.OPINION, i), 1.0, stubMin);
             }
 
-            for (int i = minoritySize; i < LowerChambers.NUM_MP; i++) {
-                mps[i] = new MP(normalMaj.nextIntValue(), 1.0, stubMaj);
+            for (int i = minoritySize; i < mps.length; i++) {
+                mps[i] = new MP(drawInt(majority, run, Channel.OPINION, i), 1.0, stubMaj);
             }
 
 
@@ -92,81 +248,88 @@ public abstract class Setup {
         private final double stub;
         private final double var;
         private final double mean;
+        private final NormalDistribution normalOpinionDist;
 
         public NormalOpNoSpeechOrStub(double mean, double var, double speech, double stub) {
             this.speech = speech;
             this.stub = stub;
             this.var = var;
             this.mean = mean;
+            this.normalOpinionDist = new NormalDistribution(mean, var);
         }
 
         public MP[] generateMPs(int run) {
-            MP[] mps = new MP[LowerChambers.NUM_MP];
-            Random rand = new Random();
-            NormalDistribution normalOpinionDist = new NormalDistribution(rand.nextLong(), mean,
-                    var);
+            MP[] mps = new MP[getSize()];
 
-            for (int i = 0; i < LowerChambers.NUM_MP; i++) {
-                mps[i] = new MP(normalOpinionDist.nextIntValue(), speech, stub);
+            for (int i = 0; i < mps.length; i++) {
+                mps[i] = new MP(drawInt(normalOpinionDist, run, Channel.OPINION, i), speech,
+                        stub);
             }
             return mps;
         }
     }
 
     public static class RootNTestSetup extends Setup {
+        private final NormalDistribution stubNorm = new NormalDistribution(0.6, 0.15);
+        private final NormalDistribution speechNorm = new NormalDistribution(0.5, 0.25);
+        private final NormalDistribution fullNormalDist = new FullNormalDistribution();
+
         private final int pro;
         private final int against;
         private final double stubborn;
-        private NormalDistribution stubNorm;
+        private final boolean normalStubborn;
 
         public RootNTestSetup(int pro, int against) {
             this.pro = pro;
             this.against = against;
             this.stubborn = 1.0;
-
+            this.normalStubborn = true;
         }
 
         public RootNTestSetup(int pro, int against, double stubborn) {
             this.pro = pro;
             this.against = against;
             this.stubborn = stubborn;
-            this.stubNorm = null;
+            this.normalStubborn = false;
         }
 
         @Override
         public MP[] generateMPs(int run) {
-            MP[] mps = new MP[LowerChambers.NUM_MP];
-            Random rand = new Random();
-
-            this.stubNorm = new NormalDistribution(rand.nextLong(), 0.6, 0.15);
+            MP[] mps = new MP[getSize()];
+            if (pro + against > mps.length) {
+                throw new IllegalStateException("Can not fit " + (pro + against) + " MPs in " +
+                        mps.length);
+            }
 
-//            NormalDistribution proOpinionDist = new NormalDistribution(rand.nextLong(), 750, 50);
-//            NormalDistribution againstOpinionDist = new NormalDistribution(rand.nextLong(), 750,
+//            NormalDistribution proOpinionDist = new NormalDistribution(rand.split(), 750, 50);
+//            NormalDistribution againstOpinionDist = new NormalDistribution(rand.split(), 750,
 //                    50);
-            NormalDistribution speech = new NormalDistribution(rand.nextLong(), 0.5, 0.25);
-
-
 
             for (int i = 0; i < pro; i++) {
                 //add pro
-                mps[i] = new MP(800, speech.nextValue(), getStubborn());
+                mps[i] = new MP(800, getSpeech(run, i), getStubborn(run, i));
             }
 
             for (int i = pro; i < pro + against; i++) {
                 //add against
-                mps[i] = new MP(-800, speech.nextValue(), getStubborn());
+                mps[i] = new MP(-800, getSpeech(run, i), getStubborn(run, i));
             }
 
-            for (int i = pro + against; i < LowerChambers.NUM_MP; i++) {
-                mps[i] = new MP(fullNormalDist.nextIntValue(), speech.nextValue(), getStubborn());
+            for (int i = pro + against; i < mps.length; i++) {
+                mps[i] = new MP(drawInt(fullNormalDist, run, Channel.OPINION, i),
+                        getSpeech(run, i), getStubborn(run, i));
             }
 
             return mps;
         }
 
-        private double getStubborn() {
-            if (stubNorm != null) {
-                return stubNorm.nextValue();
+        private double getSpeech(int run, int mp) {
+            return draw(speechNorm, run, Channel.SPEECH, mp);
+        }
+
+        private double getStubborn(int run, int mp) {
+            if (normalStubborn) {
+                return draw(stubNorm, run, Channel.STUBBORNNESS, mp);
             } else {
                 return stubborn;
             }
@@ -235,112 +398,217 @@ public abstract class Setup {
 
         private static class Party {
             private final int size;
-            private final NormalDistribution dist;
+            private final int opinion;
+            private final int variance;
             private final double stubb;
             private final double speech;
+            private final NormalDistribution dist;
 
             private Party(int size, int opinion, int variance, double stubb, double speech) {
                 this.size = size;
+                this.opinion = opinion;
+                this.variance = variance;
                 this.stubb = stubb;
                 this.speech = speech;
-                dist = new NormalDistribution(opinion, variance);
+                //opinions outside of the range are clamped by the MP, so a party with its mean
+                //at the edge keeps half of its MPs exactly on the edge
+                this.dist = new NormalDistribution(opinion, variance);
             }
 
-            private int generate(MP[] mps, int offset) {
+            private int generate(MP[] mps, int offset, Setup setup, int run) {
                 for(int i = offset; i < offset + size; i++) {
-                    mps[i] = new MP(dist.nextIntValue(), speech, stubb);
+                    mps[i] = new MP(setup.drawInt(dist, run, Channel.OPINION, i), speech, stubb);
                 }
                 return size;
             }
         }
 
         private Party[] parties;
+        private final int seats;
 
         public TweedeKamerSetup(Party[] parties) {
             this.parties = parties;
+            int seats = 0;
+            for (Party party : parties) {
+                seats += party.size;
+            }
+            this.seats = seats;
+            //the chamber is as big as the parties together
+            setSize(seats);
         }
 
         @Override
         public MP[] generateMPs(int run) {
-            MP[] mps = new MP[LowerChambers.NUM_MP];
+            MP[] mps = new MP[getSize()];
+            if (seats != mps.length) {
+                throw new RuntimeException("Parties have " + seats + " seats instead of " +
+                        mps.length);
+            }
             int off = 0;
             for(Party party: parties) {
-                off += party.generate(mps, off);
-            }
-
-            if (off != 150) {
-                throw new RuntimeException("Did not make 150 MPs");
+                off += party.generate(mps, off, this, run);
             }
 
             return mps;
         }
     }
 
-    private static final NormalDistribution fullNormalDist = new FullNormalDistribution();
-
     private static class FullNormalDistribution extends NormalDistribution {
 
         public FullNormalDistribution() {
-            super(0, 500);
+            this(new SplittableRandom());
         }
 
-        @Override
-        public double nextValue() {
-            double val;
-
-            do {
-                val = super.nextValue();
-            } while (val > 1000.0);
-
-            return super.nextValue();
+        public FullNormalDistribution(SplittableRandom rand) {
+            super(rand, 0, 500, -MP.OPINION_MAX, MP.OPINION_MAX);
         }
     }
 
     public static class NormalDistribution {
 
-        private Random rand;
+        private final SplittableRandom rand;
         private final double mean;
 
         private final double stdDeviation;
+        private final TruncatedNormal truncated;
 
         public NormalDistribution(double mean, double stdDeviation) {
-            this.rand = new Random();
-            this.mean = mean;
-            this.stdDeviation = stdDeviation;
+            this(new SplittableRandom(), mean, stdDeviation);
         }
 
         public NormalDistribution(long seed, double mean, double stdDeviation) {
-            this.rand = new Random(seed);
+            this(new SplittableRandom(seed), mean, stdDeviation);
+        }
+
+        public NormalDistribution(SplittableRandom rand, double mean, double stdDeviation) {
+            this.rand = rand;
             this.mean = mean;
             this.stdDeviation = stdDeviation;
+            this.truncated = null;
+        }
+
+        public NormalDistribution(double mean, double stdDeviation, double min, double max) {
+            this(new SplittableRandom(), mean, stdDeviation, min, max);
+        }
+
+        /**
+         * Normal distribution truncated to [min, max], every value lies within the bounds without
+         * having to redraw values outside of them.
+         */
+        public NormalDistribution(SplittableRandom rand, double mean, double stdDeviation,
+                                  double min, double max) {
+            if (!(stdDeviation >= 0) || !(min <= max)) {
+                throw new IllegalArgumentException("Invalid truncated normal distribution with " +
+                        "standard deviation " + stdDeviation + " on [" + min + ", " + max + "]");
+            }
+            this.rand = rand;
+            this.stdDeviation = stdDeviation;
+            if (stdDeviation == 0) {
+                //every value is the mean, which has to lie within the bounds as well
+                this.mean = Math.min(max, Math.max(min, mean));
+                this.truncated = null;
+            } else {
+                this.mean = mean;
+                this.truncated = new TruncatedNormal((min - mean) / stdDeviation,
+                        (max - mean) / stdDeviation);
+            }
         }
 
         public double nextValue() {
+            return nextValue(rand);
+        }
+
+        /**
+         * Draws the next value from the given stream instead of the stream of the distribution,
+         * a distribution used this way can be shared between threads.
+         */
+        public double nextValue(SplittableRandom random) {
             //next normal value with mean and stdDeviation
-            return rand.nextGaussian() * stdDeviation + mean;
+            if (truncated == null) {
+                return random.nextGaussian() * stdDeviation + mean;
+            }
+            return truncated.next(random) * stdDeviation + mean;
+        }
+
+        /**
+         * The value with probability u of drawing a smaller value, u must lie in (0, 1).
+         */
+        public double quantile(double u) {
+            if (truncated == null) {
+                return TruncatedNormal.inverseCdf(u) * stdDeviation + mean;
+            }
+            return truncated.quantile(u) * stdDeviation + mean;
+        }
+
+        double getMean() {
+            return mean;
+        }
+
+        double getStdDeviation() {
+            return stdDeviation;
+        }
+
+        /**
+         * The same distribution with its mean moved by the given number of standard deviations,
+         * truncated to the same bounds.
+         */
+        NormalDistribution shifted(double shift) {
+            if (shift == 0 || stdDeviation == 0) {
+                return this;
+            }
+            double shiftedMean = mean + shift * stdDeviation;
+            if (truncated == null) {
+                return new NormalDistribution(rand, shiftedMean, stdDeviation);
+            }
+            return new NormalDistribution(rand, shiftedMean, stdDeviation,
+                    truncated.getLower() * stdDeviation + mean,
+                    truncated.getUpper() * stdDeviation + mean);
+        }
+
+        /**
+         * The log of the density of this distribution divided by the density of the other one
+         * at the value, the other distribution must be {@link #shifted(double)} from this one.
+         */
+        double logDensityRatio(NormalDistribution other, double value) {
+            if (other == this) {
+                return 0;
+            }
+            double z = (value - mean) / stdDeviation;
+            double otherZ = (value - other.mean) / stdDeviation;
+            double ratio = (otherZ * otherZ - z * z) / 2;
+            if (truncated != null) {
+                ratio += Math.log(other.truncated.getMass() / truncated.getMass());
+            }
+            return ratio;
         }
 
         public int nextIntValue() {
             return (int) nextValue();
         }
 
+        public int nextIntValue(SplittableRandom random) {
+            return (int) nextValue(random);
+        }
+
     }
 
     public static class UniformIntDistribution {
 
-        private Random rand;
+        private final SplittableRandom rand;
         private final int min;
 
         private final int spread;
 
         public UniformIntDistribution(int min, int max) {
-            this.rand = new Random();
-            this.min = min;
-            this.spread = max - min;
+            this(new SplittableRandom(), min, max);
         }
 
         public UniformIntDistribution(long seed, int min, int max) {
-            this.rand = new Random(seed);
+            this(new SplittableRandom(seed), min, max);
+        }
+
+        public UniformIntDistribution(SplittableRandom rand, int min, int max) {
+            this.rand = rand;
             this.min = min;
             this.spread = max - min;
         }
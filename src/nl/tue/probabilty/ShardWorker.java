@@ -0,0 +1,232 @@
+package nl.tue.probabilty;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a batch of runs over several processes. A worker runs a range of run indices of a named
+ * scenario and saves the statistics of these runs in a shard file, the shards of one batch can
+ * then be merged into the same report as running the whole batch in one process.
+ *
+ * <pre>
+ * run &lt;scenario&gt; &lt;seed&gt; &lt;PRO|AGAINST&gt; &lt;from&gt; &lt;to&gt; &lt;out.shard&gt; [threads]
+ * merge &lt;report.txt&gt; &lt;merged.shard&gt; &lt;in.shard&gt;...
+ * local &lt;scenario&gt; &lt;seed&gt; &lt;PRO|AGAINST&gt; &lt;runs&gt; &lt;processes&gt; &lt;dir&gt;
+ * </pre>
+ */
+public class ShardWorker {
+
+    public static class Shard {
+
+        private static final int MAGIC = 0x50535348;
+
+        private final String scenario;
+        private final long seed;
+        private final VoteOptions startSide;
+        // pairs of [from, to) run indices that are part of this shard
+        private final List<int[]> ranges;
+        private final RunStatistics statistics;
+
+        public Shard(String scenario, long seed, VoteOptions startSide, int from, int to,
+                     RunStatistics statistics) {
+            this.scenario = scenario;
+            this.seed = seed;
+            this.startSide = startSide;
+            this.ranges = new ArrayList<>();
+            this.ranges.add(new int[]{from, to});
+            this.statistics = statistics;
+        }
+
+        private Shard(String scenario, long seed, VoteOptions startSide, List<int[]> ranges,
+                      RunStatistics statistics) {
+            this.scenario = scenario;
+            this.seed = seed;
+            this.startSide = startSide;
+            this.ranges = ranges;
+            this.statistics = statistics;
+        }
+
+        public RunStatistics getStatistics() {
+            return statistics;
+        }
+
+        /**
+         * Merges the other shard into this one, both must be runs of the same batch without
+         * overlapping run indices.
+         */
+        public void merge(Shard other) {
+            if (!scenario.equals(other.scenario) || seed != other.seed ||
+                    startSide != other.startSide) {
+                throw new IllegalArgumentException("Shard of " + other.scenario + " (seed " +
+                        other.seed + ", " + other.startSide + ") is not part of " + scenario +
+                        " (seed " + seed + ", " + startSide + ")");
+            }
+            for (int[] range : ranges) {
+                for (int[] otherRange : other.ranges) {
+                    if (range[0] < otherRange[1] && otherRange[0] < range[1]) {
+                        throw new IllegalArgumentException("Shards overlap in runs [" +
+                                Math.max(range[0], otherRange[0]) + ", " +
+                                Math.min(range[1], otherRange[1]) + ")");
+                    }
+                }
+            }
+            ranges.addAll(other.ranges);
+            statistics.merge(other.statistics);
+        }
+
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeInt(MAGIC);
+            out.writeUTF(scenario);
+            out.writeLong(seed);
+            out.writeUTF(startSide.name());
+            out.writeInt(ranges.size());
+            for (int[] range : ranges) {
+                out.writeInt(range[0]);
+                out.writeInt(range[1]);
+            }
+            statistics.writeTo(out);
+        }
+
+        public static Shard readFrom(DataInput in) throws IOException {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a shard file");
+            }
+            String scenario = in.readUTF();
+            long seed = in.readLong();
+            VoteOptions startSide = VoteOptions.valueOf(in.readUTF());
+            int count = in.readInt();
+            List<int[]> ranges = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                ranges.add(new int[]{in.readInt(), in.readInt()});
+            }
+            return new Shard(scenario, seed, startSide, ranges, RunStatistics.readFrom(in));
+        }
+
+        public void save(File file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(file.toPath())))) {
+                writeTo(out);
+            }
+        }
+
+        public static Shard load(File file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    Files.newInputStream(file.toPath())))) {
+                return readFrom(in);
+            }
+        }
+    }
+
+    public static Shard runShard(String scenario, long seed, VoteOptions startSide, int from,
+                                 int to, int threads) {
+        Setup setup = Scenarios.create(scenario);
+        setup.setSeed(seed);
+        Results results = new Results(Math.max(1, to), setup, startSide);
+        results.setParallelism(threads);
+        return new Shard(scenario, seed, startSide, from, to, results.runRange(from, to));
+    }
+
+    public static Shard merge(List<File> files) throws IOException {
+        Shard merged = null;
+        for (File file : files) {
+            Shard shard = Shard.load(file);
+            if (merged == null) {
+                merged = shard;
+            } else {
+                merged.merge(shard);
+            }
+        }
+        if (merged == null) {
+            throw new IllegalArgumentException("No shards to merge");
+        }
+        return merged;
+    }
+
+    /**
+     * Runs the batch in the given number of worker processes on this machine and merges their
+     * shards.
+     */
+    public static Shard runLocal(String scenario, long seed, VoteOptions startSide, int runs,
+                                 int processes, File dir) throws IOException,
+            InterruptedException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java")
+                .getPath();
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / processes);
+        List<Process> workers = new ArrayList<>();
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < processes; i++) {
+            int from = (int) ((long) runs * i / processes);
+            int to = (int) ((long) runs * (i + 1) / processes);
+            File file = new File(dir, scenario + "-" + startSide.name().toLowerCase() + "-" +
+                    from + "-" + to + ".shard");
+            files.add(file);
+            workers.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ShardWorker.class.getName(), "run", scenario, Long.toString(seed),
+                    startSide.name(), Integer.toString(from), Integer.toString(to),
+                    file.getPath(), Integer.toString(threads)).inheritIO().start());
+        }
+        for (int i = 0; i < workers.size(); i++) {
+            int exit = workers.get(i).waitFor();
+            if (exit != 0) {
+                throw new IOException("Worker " + i + " failed with exit code " + exit);
+            }
+        }
+        return merge(files);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("Usage: run|merge|local ...");
+            return;
+        }
+        switch (args[0]) {
+            case "run": {
+                int threads = args.length > 7 ? Integer.parseInt(args[7]) :
+                        Runtime.getRuntime().availableProcessors();
+                Shard shard = runShard(args[1], Long.parseLong(args[2]),
+                        VoteOptions.valueOf(args[3]), Integer.parseInt(args[4]),
+                        Integer.parseInt(args[5]), threads);
+                shard.save(new File(args[6]));
+                System.out.println("Saved runs [" + args[4] + ", " + args[5] + ") to " +
+                        args[6]);
+                break;
+            }
+            case "merge": {
+                List<File> files = new ArrayList<>();
+                for (int i = 3; i < args.length; i++) {
+                    files.add(new File(args[i]));
+                }
+                Shard merged = merge(files);
+                merged.save(new File(args[2]));
+                Results.writeResults(merged.getStatistics(), new File(args[1]));
+                System.out.println("Merged " + files.size() + " shards into " + args[1]);
+                break;
+            }
+            case "local": {
+                File dir = new File(args[6]);
+                Shard merged = runLocal(args[1], Long.parseLong(args[2]),
+                        VoteOptions.valueOf(args[3]), Integer.parseInt(args[4]),
+                        Integer.parseInt(args[5]), dir);
+                String name = args[1] + "-" + args[3].toLowerCase() + "-starts";
+                merged.save(new File(dir, name + ".shard"));
+                Results.writeResults(merged.getStatistics(), new File(dir, name + ".txt"));
+                System.out.println("Saved to " + name + ".txt");
+                break;
+            }
+            default:
+                System.out.println("Unknown mode " + args[0]);
+        }
+    }
+}
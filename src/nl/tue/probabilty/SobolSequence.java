@@ -0,0 +1,169 @@
+package nl.tue.probabilty;
+
+import java.util.SplittableRandom;
+
+/**
+ * The Sobol low discrepancy sequence in as many dimensions as needed. Dimension d &gt; 0 uses the
+ * d-th primitive polynomial over GF(2), ordered by degree, with initial direction numbers that
+ * are drawn once from a fixed seed. Coordinates are scrambled with a digital shift, every shift
+ * gives an independent randomization of the same sequence.
+ */
+final class SobolSequence {
+
+    private static final int BITS = 32;
+    private static final long DIRECTION_SEED = 0x50534f424f4cL;
+
+    /**
+     * The direction numbers per dimension, grown when a higher dimension is asked for.
+     */
+    private static volatile int[][] directions = new int[0][];
+    private static long lastPolynomial = 1;
+
+    private SobolSequence() {
+    }
+
+    /**
+     * The coordinate of the point with the given index in the given dimension, shifted by the
+     * given shift. The result lies strictly between 0 and 1.
+     *
+     * @param index must be less than 2^32
+     */
+    static double coordinate(long index, int dimension, int shift) {
+        int[] v = directions(dimension);
+        int x = shift;
+        for (int bit = 0; index != 0; bit++, index >>>= 1) {
+            if ((index & 1) != 0) {
+                x ^= v[bit];
+            }
+        }
+        return ((x & 0xffffffffL) + 0.5) * 0x1.0p-32;
+    }
+
+    private static int[] directions(int dimension) {
+        int[][] known = directions;
+        if (dimension < known.length) {
+            return known[dimension];
+        }
+        return grow(dimension);
+    }
+
+    private static synchronized int[] grow(int dimension) {
+        int[][] known = directions;
+        if (dimension < known.length) {
+            return known[dimension];
+        }
+        int[][] grown = new int[Math.max(dimension + 1, 2 * known.length)][];
+        System.arraycopy(known, 0, grown, 0, known.length);
+        for (int d = known.length; d < grown.length; d++) {
+            grown[d] = d == 0 ? firstDirections() : directionsOf(nextPrimitive(), d);
+        }
+        directions = grown;
+        return grown[dimension];
+    }
+
+    private static int[] firstDirections() {
+        int[] v = new int[BITS];
+        for (int k = 0; k < BITS; k++) {
+            v[k] = 1 << (BITS - 1 - k);
+        }
+        return v;
+    }
+
+    private static int[] directionsOf(long polynomial, int dimension) {
+        int degree = 63 - Long.numberOfLeadingZeros(polynomial);
+        SplittableRandom random = new SplittableRandom(DIRECTION_SEED + dimension);
+        long[] m = new long[BITS + 1];
+        for (int k = 1; k <= Math.min(degree, BITS); k++) {
+            //any odd number below 2^k
+            m[k] = 2 * random.nextLong(1L << (k - 1)) + 1;
+        }
+        for (int k = degree + 1; k <= BITS; k++) {
+            long value = m[k - degree] ^ (m[k - degree] << degree);
+            for (int j = 1; j < degree; j++) {
+                if ((polynomial >>> (degree - j) & 1) != 0) {
+                    value ^= m[k - j] << j;
+                }
+            }
+            m[k] = value;
+        }
+        int[] v = new int[BITS];
+        for (int k = 1; k <= BITS; k++) {
+            v[k - 1] = (int) (m[k] << (BITS - k));
+        }
+        return v;
+    }
+
+    /**
+     * The next primitive polynomial, bit i is the coefficient of x^i.
+     */
+    private static long nextPrimitive() {
+        long polynomial = lastPolynomial + 1;
+        while (!isPrimitive(polynomial)) {
+            polynomial++;
+        }
+        lastPolynomial = polynomial;
+        return polynomial;
+    }
+
+    /**
+     * A polynomial of degree n is primitive when x has order 2^n - 1 modulo the polynomial.
+     */
+    private static boolean isPrimitive(long polynomial) {
+        if ((polynomial & 1) == 0) {
+            return false;
+        }
+        int degree = 63 - Long.numberOfLeadingZeros(polynomial);
+        long order = (1L << degree) - 1;
+        if (power(order, polynomial) != 1) {
+            return false;
+        }
+        long rest = order;
+        for (long factor = 2; factor * factor <= rest; factor++) {
+            if (rest % factor == 0) {
+                if (power(order / factor, polynomial) == 1) {
+                    return false;
+                }
+                while (rest % factor == 0) {
+                    rest /= factor;
+                }
+            }
+        }
+        return rest == 1 || rest == order || power(order / rest, polynomial) != 1;
+    }
+
+    /**
+     * x^exponent modulo the polynomial.
+     */
+    private static long power(long exponent, long polynomial) {
+        long result = 1;
+        long base = reduce(2, polynomial);
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = multiply(result, base, polynomial);
+            }
+            base = multiply(base, base, polynomial);
+            exponent >>>= 1;
+        }
+        return result;
+    }
+
+    private static long multiply(long a, long b, long polynomial) {
+        long result = 0;
+        while (b != 0) {
+            if ((b & 1) != 0) {
+                result ^= a;
+            }
+            b >>>= 1;
+            a = reduce(a << 1, polynomial);
+        }
+        return result;
+    }
+
+    private static long reduce(long value, long polynomial) {
+        int degree = 63 - Long.numberOfLeadingZeros(polynomial);
+        if ((value >>> degree & 1) != 0) {
+            value ^= polynomial;
+        }
+        return value;
+    }
+}
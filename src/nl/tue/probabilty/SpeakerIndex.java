@@ -0,0 +1,116 @@
+package nl.tue.probabilty;
+
+import java.util.Arrays;
+
+/**
+ * Keeps track of the best speaker of each side that has not spoken yet. Every side has a
+ * tournament tree over the MPs, the root holds the MP with the highest speech where ties go to
+ * the MP with the lowest index, just like a scan over all MPs would pick. Updating a single MP
+ * costs O(log N) and when most MPs changed the trees are rebuilt in O(N).
+ */
+class SpeakerIndex {
+
+    private static final int ABSENT = -1;
+
+    private final int size;
+    private final int leaves;
+    private final int rebuildThreshold;
+
+    // per side (PRO, AGAINST) the speech of every MP, ABSENT if it is not available on that side
+    private final int[][] speech;
+    private final int[][] tree;
+
+    SpeakerIndex(int size) {
+        this.size = size;
+        int leaves = 1;
+        while (leaves < size) {
+            leaves <<= 1;
+        }
+        this.leaves = leaves;
+        int depth = Math.max(1, Integer.numberOfTrailingZeros(leaves));
+        this.rebuildThreshold = 2 * leaves / depth;
+
+        speech = new int[2][size];
+        tree = new int[2][2 * leaves];
+        for (int side = 0; side < 2; side++) {
+            Arrays.fill(speech[side], ABSENT);
+            Arrays.fill(tree[side], ABSENT);
+        }
+    }
+
+    /**
+     * The number of changed MPs above which a {@link #rebuild()} is cheaper than updating them
+     * one by one.
+     */
+    int getRebuildThreshold() {
+        return rebuildThreshold;
+    }
+
+    /**
+     * Stores the side and speech of the MP without updating the trees, call {@link #rebuild()}
+     * before asking for the best speaker again.
+     */
+    void put(int mp, VoteOptions side, int mpSpeech) {
+        speech[0][mp] = ABSENT;
+        speech[1][mp] = ABSENT;
+        if (side != VoteOptions.NEUTRAL) {
+            speech[side.ordinal()][mp] = mpSpeech;
+        }
+    }
+
+    void update(int mp, VoteOptions side, int mpSpeech) {
+        put(mp, side, mpSpeech);
+        updatePath(0, mp);
+        updatePath(1, mp);
+    }
+
+    void remove(int mp) {
+        update(mp, VoteOptions.NEUTRAL, ABSENT);
+    }
+
+    void rebuild() {
+        for (int side = 0; side < 2; side++) {
+            int[] sideTree = tree[side];
+            for (int i = 0; i < size; i++) {
+                sideTree[leaves + i] = speech[side][i] == ABSENT ? ABSENT : i;
+            }
+            for (int node = leaves - 1; node > 0; node--) {
+                sideTree[node] = better(side, sideTree[2 * node], sideTree[2 * node + 1]);
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the best speaker of the side or -1 if nobody can speak for it.
+     */
+    int best(VoteOptions side) {
+        if (side == VoteOptions.NEUTRAL) {
+            return ABSENT;
+        }
+        return tree[side.ordinal()][1];
+    }
+
+    private void updatePath(int side, int mp) {
+        int[] sideTree = tree[side];
+        int node = leaves + mp;
+        sideTree[node] = speech[side][mp] == ABSENT ? ABSENT : mp;
+        for (node >>= 1; node > 0; node >>= 1) {
+            sideTree[node] = better(side, sideTree[2 * node], sideTree[2 * node + 1]);
+        }
+    }
+
+    private int better(int side, int a, int b) {
+        if (a == ABSENT) {
+            return b;
+        }
+        if (b == ABSENT) {
+            return a;
+        }
+        int speechA = speech[side][a];
+        int speechB = speech[side][b];
+        if (speechA > speechB || (speechA == speechB && a < b)) {
+            return a;
+        }
+        return b;
+    }
+}
@@ -0,0 +1,148 @@
+package nl.tue.probabilty;
+
+/**
+ * Decides when a batch has done enough runs. Runs are done in steps and after every step the 95%
+ * confidence intervals of the win fraction and of the median of every vote option at every
+ * measure point are checked, once all of them are narrower than their target width (and the
+ * minimum number of runs is done) no more runs are needed. The maximum number of runs is never
+ * exceeded, even if the intervals are still too wide.
+ * <p>
+ * When the runs were divided over the replicates of a {@link SamplingStrategy} the runs are not
+ * independent, then the win interval comes from the spread between the replicates instead.
+ * <p>
+ * Because every run has its own seed, stopping after n runs gives exactly the same results as
+ * doing n runs in the first place.
+ */
+public class StoppingRule {
+
+    /**
+     * The 97.5% quantile of the standard normal distribution, for two sided 95% intervals.
+     */
+    private static final double Z = 1.959963984540054;
+    /**
+     * The 97.5% quantiles of the t distribution with 1 up to {@link SamplingStrategy#REPLICATES}
+     * - 1 degrees of freedom, one less than the number of filled replicates.
+     */
+    private static final double[] T = {12.706204736174705, 4.302652729749464,
+            3.182446305284263, 2.776445105197793, 2.570581835636314, 2.446911851144969,
+            2.364624251592785, 2.306004135204166, 2.262157162798205, 2.228138851986274,
+            2.200985160091639, 2.178812829667228, 2.160368656461013, 2.144786687917804,
+            2.131449545559323};
+
+    private final int minRuns;
+    private final int maxRuns;
+    private final int step;
+    private final double winWidth;
+    private final double medianWidth;
+
+    /**
+     * @param minRuns     the runs that are always done
+     * @param maxRuns     the runs after which it always stops
+     * @param step        the runs done between two checks of the intervals
+     * @param winWidth    the target width of the interval of a win fraction, between 0 and 1
+     * @param medianWidth the target width of the interval of a median, in votes
+     */
+    public StoppingRule(int minRuns, int maxRuns, int step, double winWidth,
+                        double medianWidth) {
+        if (minRuns <= 0 || maxRuns < minRuns) {
+            throw new IllegalArgumentException("Need 0 < minRuns <= maxRuns, got " + minRuns +
+                    " and " + maxRuns);
+        }
+        if (step <= 0) {
+            throw new IllegalArgumentException("Must do at least one run per step");
+        }
+        if (!(winWidth > 0) || !(medianWidth >= 0)) {
+            throw new IllegalArgumentException("Invalid target widths " + winWidth + " and " +
+                    medianWidth);
+        }
+        this.minRuns = minRuns;
+        this.maxRuns = maxRuns;
+        this.step = step;
+        this.winWidth = winWidth;
+        this.medianWidth = medianWidth;
+    }
+
+    public int getMinRuns() {
+        return minRuns;
+    }
+
+    public int getMaxRuns() {
+        return maxRuns;
+    }
+
+    /**
+     * Returns the number of runs that should be done in total before checking again, given
+     * the runs that are done so far.
+     */
+    public int nextStop(long done) {
+        if (done < minRuns) {
+            return minRuns;
+        }
+        return (int) Math.min(maxRuns, done + step);
+    }
+
+    /**
+     * Same as {@link #nextStop(long)}, but rounded up to whole antithetic pairs when the runs are
+     * sampled in pairs, so no replicate is checked with half a pair.
+     */
+    public int nextStop(long done, SamplingStrategy sampling) {
+        return Math.min(maxRuns, sampling.wholePairs(nextStop(done)));
+    }
+
+    /**
+     * Whether the runs in the statistics are enough.
+     */
+    public boolean isDone(RunStatistics statistics) {
+        long runs = statistics.getRuns();
+        if (runs >= maxRuns) {
+            return true;
+        }
+        if (runs < minRuns) {
+            return false;
+        }
+        for (int i = 0; i < statistics.getMeasurePoints(); i++) {
+            for (VoteOptions option : VoteOptions.values()) {
+                if (winIntervalWidth(statistics, i, option) > winWidth ||
+                        medianIntervalWidth(statistics.getVotes(i, option)) > medianWidth) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static double winIntervalWidth(RunStatistics statistics, int measurePoint,
+                                           VoteOptions option) {
+        long wins = statistics.getWins(measurePoint, option);
+        long runs = statistics.getRuns();
+        //the replicates agree exactly when an option never or always wins, which says little
+        if (statistics.hasReplicates() && wins > 0 && wins < runs) {
+            double t = T[statistics.getFilledReplicates() - 2];
+            return 2 * t * statistics.getWinError(measurePoint, option);
+        }
+        return winIntervalWidth(wins, runs);
+    }
+
+    /**
+     * The width of the Wilson score interval of wins out of runs, unlike the normal
+     * approximation it does not collapse to zero when an option (almost) never wins.
+     */
+    static double winIntervalWidth(long wins, long runs) {
+        double p = wins / (double) runs;
+        double z2 = Z * Z;
+        return 2 * Z * Math.sqrt(p * (1 - p) / runs + z2 / (4.0 * runs * runs)) /
+                (1 + z2 / runs);
+    }
+
+    /**
+     * The width of the distribution free interval of the median, between the order statistics
+     * that are z * sqrt(n) / 2 ranks below and above the middle.
+     */
+    static int medianIntervalWidth(CountHistogram values) {
+        long n = values.getCount();
+        double spread = Z * Math.sqrt(n) / 2;
+        long lower = (long) Math.floor(n / 2.0 - spread);
+        long upper = (long) Math.ceil(n / 2.0 + spread);
+        return values.get(upper) - values.get(lower);
+    }
+}
@@ -0,0 +1,137 @@
+package nl.tue.probabilty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Describes a sweep, a group of setups whose results are saved in the same directory. Points can
+ * be added one by one or as a grid over an integer parameter, for example
+ * {@code grid("stub-minor-", IntStream.rangeClosed(5, 75), Scenarios::stubbornMinority)}.
+ */
+public class Sweep {
+
+    public static class Point {
+        private final String name;
+        private final Setup setup;
+        private final boolean both;
+
+        private Point(String name, Setup setup, boolean both) {
+            this.name = name;
+            this.setup = setup;
+            this.both = both;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Setup getSetup() {
+            return setup;
+        }
+
+        /**
+         * Whether the point is debated with both sides starting or only with PRO starting.
+         */
+        public boolean isBoth() {
+            return both;
+        }
+    }
+
+    private final String name;
+    private final String baseDir;
+    private final List<Point> points = new ArrayList<>();
+    private Long commonSeed;
+    private SamplingStrategy sampling;
+
+    public Sweep(String name, String baseDir) {
+        this.name = name;
+        this.baseDir = baseDir;
+    }
+
+    public Sweep(String baseDir) {
+        this(baseDir, baseDir);
+    }
+
+    public Sweep add(String pointName, Setup setup) {
+        return add(pointName, setup, false);
+    }
+
+    public Sweep addBoth(String pointName, Setup setup) {
+        return add(pointName, setup, true);
+    }
+
+    private Sweep add(String pointName, Setup setup, boolean both) {
+        for (Point point : points) {
+            if (point.name.equals(pointName)) {
+                throw new IllegalArgumentException("Sweep " + name + " already has a point " +
+                        pointName);
+            }
+        }
+        if (commonSeed != null) {
+            setup.setSeed(commonSeed);
+        }
+        if (sampling != null) {
+            setup.setSampling(sampling);
+        }
+        points.add(new Point(pointName, setup, both));
+        return this;
+    }
+
+    /**
+     * Gives every point, also the ones added later, the same seed so run k of every point uses
+     * the same random numbers. Neighbouring points then differ only by their parameters and not
+     * by chance, which makes the differences between them far less noisy for the same number of
+     * runs.
+     */
+    public Sweep commonRandomNumbers(long seed) {
+        commonSeed = seed;
+        for (Point point : points) {
+            point.setup.setSeed(seed);
+        }
+        return this;
+    }
+
+    public Sweep commonRandomNumbers() {
+        return commonRandomNumbers(new SplittableRandom().nextLong());
+    }
+
+    /**
+     * Uses the sampling strategy for every point, also the ones added later.
+     */
+    public Sweep sampling(SamplingStrategy strategy) {
+        sampling = strategy;
+        for (Point point : points) {
+            point.setup.setSampling(strategy);
+        }
+        return this;
+    }
+
+    /**
+     * Adds a point named prefix + value for every value.
+     */
+    public Sweep grid(String prefix, IntStream values, IntFunction<Setup> setups) {
+        values.forEach(value -> add(prefix + value, setups.apply(value)));
+        return this;
+    }
+
+    public Sweep gridBoth(String prefix, IntStream values, IntFunction<Setup> setups) {
+        values.forEach(value -> addBoth(prefix + value, setups.apply(value)));
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getBaseDir() {
+        return baseDir;
+    }
+
+    public List<Point> getPoints() {
+        return Collections.unmodifiableList(points);
+    }
+}
@@ -0,0 +1,404 @@
+package nl.tue.probabilty;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs sweeps on one shared work-stealing pool. Every point of every sweep is split into work
+ * units of (point, start side, range of runs), so a point with few runs left never keeps the
+ * other threads waiting. The results of a point are handed to a {@link ResultWriter} as soon as
+ * all of its units finished, so formatting and writing never hold up the simulation.
+ * <p>
+ * With a checkpoint directory every finished unit is saved as a shard, a restarted sweep skips
+ * the points that were already saved and only runs the units of the other points that have no
+ * shard yet. The seed of every point is kept with its checkpoints so the resumed runs continue
+ * the same random streams.
+ * <p>
+ * With a {@link StoppingRule} the units of a point are planned in rounds, when all units of a
+ * round are done the rule decides whether another round is needed. Easy points therefore stop
+ * early and leave the threads to the points that need more runs.
+ */
+public class SweepEngine {
+
+    public static final int DEFAULT_SHARD_SIZE = 500;
+
+    private final int parallelism;
+    private final List<Sweep> sweeps = new ArrayList<>();
+    private int runs = Results.DEFAULT_RUNS;
+    private int shardSize = DEFAULT_SHARD_SIZE;
+    private int speakersPerSide = LowerChambers.SPEAKERS_PER_SIDE;
+    private ChamberEngine engine = ChamberEngine.OBJECT;
+    private File checkpointDir;
+    private ReportFormat format = ReportFormat.SEMICOLON;
+    private StoppingRule stoppingRule;
+    private ResultWriter writer;
+
+    public SweepEngine(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Must use at least one thread");
+        }
+        this.parallelism = parallelism;
+    }
+
+    public SweepEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public SweepEngine add(Sweep sweep) {
+        sweeps.add(sweep);
+        return this;
+    }
+
+    public void setRuns(int runs) {
+        if (runs <= 0) {
+            throw new IllegalArgumentException("Must do at least one run");
+        }
+        this.runs = runs;
+    }
+
+    public void setShardSize(int shardSize) {
+        if (shardSize <= 0) {
+            throw new IllegalArgumentException("Shards must contain at least one run");
+        }
+        this.shardSize = shardSize;
+    }
+
+    public void setEngine(ChamberEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * The number of rounds in the debate of every point, in every round one MP of each side
+     * speaks.
+     */
+    public void setSpeakersPerSide(int speakersPerSide) {
+        if (speakersPerSide < 0) {
+            throw new IllegalArgumentException("Can not have a negative amount of speakers");
+        }
+        this.speakersPerSide = speakersPerSide;
+    }
+
+    /**
+     * Runs every point until the rule is satisfied, the maximum of the rule then replaces the
+     * number of runs. Null turns this off again.
+     */
+    public void setStoppingRule(StoppingRule stoppingRule) {
+        this.stoppingRule = stoppingRule;
+    }
+
+    private int runLimit() {
+        return stoppingRule == null ? runs : stoppingRule.getMaxRuns();
+    }
+
+    public void setFormat(ReportFormat format) {
+        this.format = format;
+    }
+
+    /**
+     * Enables checkpoints of every finished unit in the given directory, running the same sweeps
+     * again with the same directory resumes them.
+     */
+    public void setCheckpointDir(File checkpointDir) {
+        this.checkpointDir = checkpointDir;
+    }
+
+    public void run() {
+        writer = new ResultWriter();
+        try {
+            runUnits(planUnits());
+        } finally {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private List<WorkUnit> planUnits() {
+        List<WorkUnit> units = new ArrayList<>();
+        for (Sweep sweep : sweeps) {
+            File dir = Results.outputDirectory(sweep.getBaseDir());
+            SweepProgress progress = new SweepProgress(sweep);
+            for (Sweep.Point point : sweep.getPoints()) {
+                File pointDir = checkpointDir == null ? null :
+                        new File(new File(checkpointDir, sweep.getName()), point.getName());
+                String fileName = restorePoint(point, pointDir, dir);
+                PointProgress pointProgress = new PointProgress(progress, point,
+                        point.isBoth() ? 2 : 1);
+                String extension = format.getExtension();
+                if (point.isBoth()) {
+                    addUnits(units, new Batch(point, VoteOptions.PRO,
+                            new File(dir, fileName + "-pro-starts" + extension), pointDir,
+                            pointProgress));
+                    addUnits(units, new Batch(point, VoteOptions.AGAINST,
+                            new File(dir, fileName + "-against-starts" + extension), pointDir,
+                            pointProgress));
+                } else {
+                    addUnits(units, new Batch(point, VoteOptions.PRO,
+                            new File(dir, fileName + extension), pointDir, pointProgress));
+                }
+            }
+        }
+        return units;
+    }
+
+    private void runUnits(List<WorkUnit> units) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(units)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Returns the output file name of the point, when resuming the name and seed of the earlier
+     * attempt are used again.
+     */
+    private String restorePoint(Sweep.Point point, File pointDir, File dir) {
+        if (pointDir == null) {
+            return Results.outputFileName(dir, point.getName(), point.isBoth(),
+                    format.getExtension());
+        }
+        File file = new File(pointDir, "point.properties");
+        Properties properties = new Properties();
+        try {
+            if (file.exists()) {
+                try (Reader reader = Files.newBufferedReader(file.toPath())) {
+                    properties.load(reader);
+                }
+                point.getSetup().setSeed(Long.parseLong(properties.getProperty("seed")));
+                return properties.getProperty("fileName");
+            }
+            String fileName = Results.outputFileName(dir, point.getName(), point.isBoth(),
+                    format.getExtension());
+            properties.setProperty("seed", Long.toString(point.getSetup().getSeed()));
+            properties.setProperty("fileName", fileName);
+            if (!pointDir.isDirectory() && !pointDir.mkdirs()) {
+                throw new IOException("Could not create " + pointDir);
+            }
+            Path temp = new File(pointDir, "point.properties.tmp").toPath();
+            try (Writer writer = Files.newBufferedWriter(temp)) {
+                properties.store(writer, point.getName());
+            }
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return fileName;
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not checkpoint " + point.getName(), e);
+        }
+    }
+
+    private void addUnits(List<WorkUnit> units, Batch batch) {
+        if (batch.isDone()) {
+            batch.progress.batchDone();
+            return;
+        }
+        batch.planRound(units);
+    }
+
+    private static class SweepProgress {
+        private final Sweep sweep;
+        private final AtomicInteger pointsDone = new AtomicInteger();
+        private final long start = System.nanoTime();
+
+        private SweepProgress(Sweep sweep) {
+            this.sweep = sweep;
+        }
+
+        private void pointDone(Sweep.Point point) {
+            int done = pointsDone.incrementAndGet();
+            int total = sweep.getPoints().size();
+            System.out.println("[" + sweep.getName() + "] saved " + point.getName() + " (" +
+                    done + "/" + total + " points)");
+            if (done == total) {
+                System.out.printf("[%s] finished in %.1f s%n", sweep.getName(),
+                        (System.nanoTime() - start) / 1e9);
+            }
+        }
+    }
+
+    private static class PointProgress {
+        private final SweepProgress sweep;
+        private final Sweep.Point point;
+        private final AtomicInteger batchesLeft;
+
+        private PointProgress(SweepProgress sweep, Sweep.Point point, int batches) {
+            this.sweep = sweep;
+            this.point = point;
+            this.batchesLeft = new AtomicInteger(batches);
+        }
+
+        private void batchDone() {
+            if (batchesLeft.decrementAndGet() == 0) {
+                sweep.pointDone(point);
+            }
+        }
+    }
+
+    /**
+     * All runs of a point with one start side, saved to one file.
+     */
+    private class Batch {
+        private final Sweep.Point point;
+        private final VoteOptions startSide;
+        private final Results results;
+        private final File file;
+        private final File pointDir;
+        private final PointProgress progress;
+        private final AtomicInteger shardsLeft = new AtomicInteger();
+        private int planned;
+        private RunStatistics statistics;
+
+        private Batch(Sweep.Point point, VoteOptions startSide, File file, File pointDir,
+                      PointProgress progress) {
+            this.point = point;
+            this.startSide = startSide;
+            this.results = new Results(runLimit(), point.getSetup(), startSide, speakersPerSide);
+            this.results.setEngine(engine);
+            this.file = file;
+            this.pointDir = pointDir;
+            this.progress = progress;
+            this.statistics = new RunStatistics(results.getMeasurePoints());
+        }
+
+        private File doneMarker() {
+            return new File(pointDir, startSide.name().toLowerCase() + ".done");
+        }
+
+        private File checkpoint(int from, int to) {
+            return new File(pointDir, startSide.name().toLowerCase() + "-" + from + "-" + to +
+                    ".shard");
+        }
+
+        private boolean isDone() {
+            return pointDir != null && doneMarker().exists() && file.exists();
+        }
+
+        private RunStatistics loadCheckpoint(int from, int to) {
+            if (pointDir == null || !checkpoint(from, to).exists()) {
+                return null;
+            }
+            try {
+                ShardWorker.Shard shard = ShardWorker.Shard.load(checkpoint(from, to));
+                if (shard.getStatistics().getMeasurePoints() != results.getMeasurePoints()) {
+                    System.out.println("Ignoring checkpoint " + checkpoint(from, to) +
+                            " of a debate with a different length");
+                    return null;
+                }
+                return shard.getStatistics();
+            } catch (IOException e) {
+                //an unreadable checkpoint is simply run again
+                System.out.println("Ignoring checkpoint " + checkpoint(from, to) + ": " +
+                        e.getMessage());
+                return null;
+            }
+        }
+
+        private void saveCheckpoint(RunStatistics shard, int from, int to) throws IOException {
+            File target = checkpoint(from, to);
+            File temp = new File(pointDir, target.getName() + ".tmp");
+            new ShardWorker.Shard(point.getName(), point.getSetup().getSeed(), startSide, from,
+                    to, shard).save(temp);
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /**
+         * Adds the units of the next round of runs, without a stopping rule there is only one
+         * round with all runs.
+         */
+        private void planRound(List<WorkUnit> units) {
+            int start = planned;
+            int end = stoppingRule == null ? runs :
+                    stoppingRule.nextStop(start, point.getSetup().getSampling());
+            planned = end;
+            //one extra so the round can not finish while checkpoints are still being loaded
+            shardsLeft.set((end - start + shardSize - 1) / shardSize + 1);
+            for (int from = start; from < end; from += shardSize) {
+                int to = Math.min(end, from + shardSize);
+                RunStatistics checkpoint = loadCheckpoint(from, to);
+                if (checkpoint != null) {
+                    shardDone(checkpoint, from, to, false, units);
+                } else {
+                    units.add(new WorkUnit(this, from, to));
+                }
+            }
+            roundShardDone(units);
+        }
+
+        private void shardDone(RunStatistics shard, int from, int to, boolean save,
+                               List<WorkUnit> units) {
+            if (save && pointDir != null) {
+                try {
+                    saveCheckpoint(shard, from, to);
+                } catch (IOException e) {
+                    System.out.println("Could not checkpoint " + checkpoint(from, to) + ": " +
+                            e.getMessage());
+                }
+            }
+            synchronized (this) {
+                statistics.merge(shard);
+            }
+            roundShardDone(units);
+        }
+
+        private void roundShardDone(List<WorkUnit> units) {
+            if (shardsLeft.decrementAndGet() != 0) {
+                return;
+            }
+            if (stoppingRule != null && !stoppingRule.isDone(statistics)) {
+                planRound(units);
+                return;
+            }
+            if (stoppingRule != null) {
+                System.out.println("[" + point.getName() + "] " +
+                        startSide.name().toLowerCase() + " starts stopped after " +
+                        statistics.getRuns() + " runs");
+            }
+            writer.submit(statistics, file, format, this::written);
+            statistics = null;
+        }
+
+        private void written() {
+            if (pointDir != null) {
+                try {
+                    Files.write(doneMarker().toPath(), new byte[0]);
+                } catch (IOException e) {
+                    System.out.println("Could not mark " + file + " as done: " + e.getMessage());
+                }
+            }
+            progress.batchDone();
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class WorkUnit extends RecursiveAction {
+
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        private WorkUnit(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            List<WorkUnit> next = new ArrayList<>();
+            batch.shardDone(batch.results.collectRange(from, to, false), from, to, true, next);
+            //the last unit of a round runs the next round, if the stopping rule asks for one
+            invokeAll(next);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package nl.tue.probabilty;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary file with the raw vote counts of every run. After a fixed header every run has a record
+ * of the same size at a known offset, holding the count of every vote option at every measure
+ * point packed in 1, 2 or 4 bytes depending on the chamber size. Runs can therefore be written in
+ * any order as they finish and read back one at a time without loading the whole file.
+ */
+public final class TrajectoryStore {
+
+    private static final int MAGIC = 0x5053544a;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    private TrajectoryStore() {
+    }
+
+    private static int widthFor(int chamberSize) {
+        if (chamberSize <= 0xff) {
+            return 1;
+        } else if (chamberSize <= 0xffff) {
+            return 2;
+        }
+        return 4;
+    }
+
+    public interface RunVisitor {
+        void visit(long run, int[][] votes);
+    }
+
+    /**
+     * Writes runs at their own position in the file, can be shared between threads.
+     */
+    public static class Writer implements Closeable {
+
+        private final FileChannel channel;
+        private final int measurePoints;
+        private final int width;
+        private final int recordSize;
+        private final long runs;
+        private final ThreadLocal<ByteBuffer> buffers;
+
+        public Writer(File file, long runs, int measurePoints, int chamberSize)
+                throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.measurePoints = measurePoints;
+            this.width = widthFor(chamberSize);
+            this.recordSize = measurePoints * Results.DATA_PER_ROUND * width;
+            this.runs = runs;
+            this.buffers = ThreadLocal.withInitial(() ->
+                    ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN));
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(measurePoints);
+            header.putInt(Results.DATA_PER_ROUND);
+            header.putInt(width);
+            header.putInt(chamberSize);
+            header.putLong(runs);
+            header.rewind();
+            channel.write(header, 0);
+        }
+
+        public void write(long run, int[][] votes) throws IOException {
+            if (run < 0 || run >= runs) {
+                throw new IndexOutOfBoundsException("Run " + run + " outside of " + runs);
+            }
+            ByteBuffer buffer = buffers.get();
+            buffer.clear();
+            for (int i = 0; i < measurePoints; i++) {
+                for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                    switch (width) {
+                        case 1:
+                            buffer.put((byte) votes[i][j]);
+                            break;
+                        case 2:
+                            buffer.putShort((short) votes[i][j]);
+                            break;
+                        default:
+                            buffer.putInt(votes[i][j]);
+                    }
+                }
+            }
+            buffer.flip();
+            long position = HEADER_SIZE + run * recordSize;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            //make sure runs that were never written still have an (empty) record
+            long size = HEADER_SIZE + runs * recordSize;
+            if (channel.size() < size) {
+                channel.write(ByteBuffer.allocate(1), size - 1);
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads runs through memory mapped windows of the file.
+     */
+    public static class Reader implements Closeable {
+
+        private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+        private final FileChannel channel;
+        private final int measurePoints;
+        private final int width;
+        private final int chamberSize;
+        private final int recordSize;
+        private final long runs;
+        private final long runsPerWindow;
+
+        private MappedByteBuffer window;
+        private long windowStart = -1;
+
+        public Reader(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                channel.close();
+                throw new IOException("Not a trajectory file");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                channel.close();
+                throw new IOException("Unsupported trajectory version " + version);
+            }
+            this.measurePoints = header.getInt();
+            if (header.getInt() != Results.DATA_PER_ROUND) {
+                channel.close();
+                throw new IOException("Trajectories were made with different vote options");
+            }
+            this.width = header.getInt();
+            this.chamberSize = header.getInt();
+            this.runs = header.getLong();
+            this.recordSize = measurePoints * Results.DATA_PER_ROUND * width;
+            this.runsPerWindow = Math.max(1, WINDOW_SIZE / recordSize);
+        }
+
+        public long getRuns() {
+            return runs;
+        }
+
+        public int getMeasurePoints() {
+            return measurePoints;
+        }
+
+        public int getChamberSize() {
+            return chamberSize;
+        }
+
+        /**
+         * Reads the votes of the run into the array, indexed by measure point and vote option.
+         *
+         * @return false if the run was never written
+         */
+        public boolean read(long run, int[][] votes) throws IOException {
+            if (run < 0 || run >= runs) {
+                throw new IndexOutOfBoundsException("Run " + run + " outside of " + runs);
+            }
+            long start = run / runsPerWindow * runsPerWindow;
+            if (start != windowStart) {
+                long size = Math.min(runsPerWindow, runs - start) * recordSize;
+                window = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + start * recordSize, size);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                windowStart = start;
+            }
+            int position = (int) ((run - start) * recordSize);
+            long total = 0;
+            for (int i = 0; i < measurePoints; i++) {
+                for (int j = 0; j < Results.DATA_PER_ROUND; j++) {
+                    int value;
+                    switch (width) {
+                        case 1:
+                            value = window.get(position) & 0xff;
+                            break;
+                        case 2:
+                            value = window.getShort(position) & 0xffff;
+                            break;
+                        default:
+                            value = window.getInt(position);
+                    }
+                    votes[i][j] = value;
+                    total += value;
+                    position += width;
+                }
+            }
+            //every MP votes, so only a record that was never written is all zero
+            return total != 0;
+        }
+
+        /**
+         * Visits all written runs in order, the votes array is reused between runs.
+         */
+        public void scan(RunVisitor visitor) throws IOException {
+            int[][] votes = new int[measurePoints][Results.DATA_PER_ROUND];
+            for (long run = 0; run < runs; run++) {
+                if (read(run, votes)) {
+                    visitor.visit(run, votes);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            window = null;
+            channel.close();
+        }
+    }
+}
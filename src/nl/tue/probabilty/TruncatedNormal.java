@@ -0,0 +1,181 @@
+package nl.tue.probabilty;
+
+import java.util.SplittableRandom;
+
+/**
+ * Draws standard normal values that lie between two bounds, using the rejection samplers of
+ * Robert (1995). Every draw is accepted with a high probability no matter where the bounds are,
+ * so even bounds far out in a tail need only a few random numbers per value. The method that
+ * fits the bounds best is chosen once, when the sampler is created.
+ * <p>
+ * Values can also be computed from a uniform number with {@link #quantile(double)}, which maps
+ * antithetic and low discrepancy uniform numbers to the truncated distribution.
+ */
+final class TruncatedNormal {
+
+    private static final double SQRT_2PI = Math.sqrt(2 * Math.PI);
+
+    //coefficients of the rational approximations of the inverse normal cdf by P. J. Acklam
+    private static final double[] A = {-3.969683028665376e+01, 2.209460984245205e+02,
+            -2.759285104469687e+02, 1.383577518672690e+02, -3.066479806614716e+01,
+            2.506628277459239e+00};
+    private static final double[] B = {-5.447609879822406e+01, 1.615858368580409e+02,
+            -1.556989798598866e+02, 6.680131188771972e+01, -1.328068155288572e+01};
+    private static final double[] C = {-7.784894002430293e-03, -3.223964580411365e-01,
+            -2.400758277161838e+00, -2.549732539343734e+00, 4.374664141464968e+00,
+            2.938163982698783e+00};
+    private static final double[] D = {7.784695709041462e-03, 3.224671290700398e-01,
+            2.445134137142996e+00, 3.754408661907416e+00};
+    private static final double P_LOW = 0.02425;
+
+    private enum Method {
+        POINT, NORMAL, UNIFORM_CENTER, UNIFORM_TAIL, EXPONENTIAL_TAIL
+    }
+
+    private final double lower;
+    private final double upper;
+    private final boolean mirrored;
+    private final Method method;
+    private final double rate;
+    private final double cdfLower;
+    private final double cdfUpper;
+
+    /**
+     * @param lower the lowest value that can be drawn, may be negative infinity
+     * @param upper the highest value that can be drawn, may be positive infinity
+     */
+    TruncatedNormal(double lower, double upper) {
+        if (Double.isNaN(lower) || Double.isNaN(upper) || lower > upper ||
+                lower == Double.POSITIVE_INFINITY || upper == Double.NEGATIVE_INFINITY) {
+            throw new IllegalArgumentException("Invalid bounds [" + lower + ", " + upper + "]");
+        }
+        //a range left of zero is drawn as its mirror image right of zero
+        mirrored = upper < 0;
+        this.lower = mirrored ? -upper : lower;
+        this.upper = mirrored ? -lower : upper;
+
+        double a = this.lower;
+        double b = this.upper;
+        if (a == b) {
+            method = Method.POINT;
+            rate = 0;
+        } else if (a <= 0) {
+            method = b - a >= SQRT_2PI ? Method.NORMAL : Method.UNIFORM_CENTER;
+            rate = 0;
+        } else {
+            rate = (a + Math.sqrt(a * a + 4)) / 2;
+            double uniformWidth = 2 * Math.sqrt(Math.E) / (a + Math.sqrt(a * a + 4)) *
+                    Math.exp((a * a - a * Math.sqrt(a * a + 4)) / 4);
+            method = b - a <= uniformWidth ? Method.UNIFORM_TAIL : Method.EXPONENTIAL_TAIL;
+        }
+        //from the left tail, where the cdf keeps its precision
+        cdfLower = cdf(-b);
+        cdfUpper = cdf(-a);
+    }
+
+    double getLower() {
+        return mirrored ? -upper : lower;
+    }
+
+    double getUpper() {
+        return mirrored ? -lower : upper;
+    }
+
+    /**
+     * The probability that an untruncated standard normal value lies between the bounds.
+     */
+    double getMass() {
+        return cdfUpper - cdfLower;
+    }
+
+    /**
+     * The value with the given probability of drawing a smaller value, u must lie in (0, 1).
+     */
+    double quantile(double u) {
+        //the mirror image of the (1 - u) quantile keeps the quantile increasing in u
+        double p = cdfLower + (mirrored ? u : 1 - u) * (cdfUpper - cdfLower);
+        double value = mirrored ? inverseCdf(p) : -inverseCdf(p);
+        return Math.min(mirrored ? -lower : upper, Math.max(mirrored ? -upper : lower, value));
+    }
+
+    /**
+     * The standard normal cdf, with a relative error below 1.2e-7 (Numerical Recipes erfcc).
+     */
+    static double cdf(double x) {
+        double z = Math.abs(x) / Math.sqrt(2);
+        double t = 1 / (1 + 0.5 * z);
+        double erfc = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 +
+                t * (0.09678418 + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 +
+                t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? 1 - erfc / 2 : erfc / 2;
+    }
+
+    /**
+     * The standard normal quantile of p in (0, 1), with a relative error below 1.2e-9.
+     */
+    static double inverseCdf(double p) {
+        if (p <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (p >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (p < P_LOW) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((C[0] * q + C[1]) * q + C[2]) * q + C[3]) * q + C[4]) * q + C[5]) /
+                    ((((D[0] * q + D[1]) * q + D[2]) * q + D[3]) * q + 1);
+        }
+        if (p > 1 - P_LOW) {
+            return -inverseCdf(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((A[0] * r + A[1]) * r + A[2]) * r + A[3]) * r + A[4]) * r + A[5]) * q /
+                (((((B[0] * r + B[1]) * r + B[2]) * r + B[3]) * r + B[4]) * r + 1);
+    }
+
+    double next(SplittableRandom rand) {
+        double value = mirrored ? -draw(rand) : draw(rand);
+        //guard against rounding just outside the bounds
+        return Math.min(mirrored ? -lower : upper, Math.max(mirrored ? -upper : lower, value));
+    }
+
+    private double draw(SplittableRandom rand) {
+        double a = lower;
+        double b = upper;
+        switch (method) {
+            case POINT:
+                return a;
+            case NORMAL:
+                while (true) {
+                    double z = rand.nextGaussian();
+                    if (z >= a && z <= b) {
+                        return z;
+                    }
+                }
+            case UNIFORM_CENTER:
+                while (true) {
+                    double z = a + (b - a) * rand.nextDouble();
+                    if (rand.nextDouble() <= Math.exp(-z * z / 2)) {
+                        return z;
+                    }
+                }
+            case UNIFORM_TAIL:
+                while (true) {
+                    double z = a + (b - a) * rand.nextDouble();
+                    if (rand.nextDouble() <= Math.exp((a * a - z * z) / 2)) {
+                        return z;
+                    }
+                }
+            case EXPONENTIAL_TAIL:
+                while (true) {
+                    double z = a - Math.log(1 - rand.nextDouble()) / rate;
+                    if (z <= b && rand.nextDouble() <= Math.exp(-(z - rate) * (z - rate) / 2)) {
+                        return z;
+                    }
+                }
+            default:
+                throw new IllegalStateException("Unknown method " + method);
+        }
+    }
+}